@@ -0,0 +1,6 @@
+@echo off
+rem Starts the kiosk image with the class data archive recorded at build time.
+rem -Xshare:auto falls back to normal class loading if the archive does not match this runtime.
+rem Extra JVM options can be passed in IIUM_JAVA_OPTS.
+set DIR=%~dp0
+"%DIR%java" -Xshare:auto -XX:SharedArchiveFile="%DIR%..\lib\iium-app.jsa" %IIUM_JAVA_OPTS% -m iium.event.participation/iium.event.participation.Main %*
@@ -1,28 +1,36 @@
 package iium.event.participation;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.StringConverter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Dashboard for Admin users.
  * Provides functionality for managing events and viewing participants.
  */
 public class AdminDashboard extends BaseDashboard {
+    private static final String ALL_FACULTIES = "All faculties";
     private TableView<Event> eventTable;
     private ObservableList<Event> eventData;
+    private ComboBox<String> facultyFilter;
+    private Label summaryTotalsLabel;
+    private Label summaryFullLabel;
+    private Label summaryTopLabel;
     
     public AdminDashboard(Stage primaryStage, User user, UserManager userManager, EventManager eventManager) {
         super(primaryStage, user, userManager, eventManager);
@@ -38,35 +46,59 @@ public class AdminDashboard extends BaseDashboard {
         Button deleteEventBtn = new Button("Delete Event");
         Button viewParticipantsBtn = new Button("View Participants");
         Button exportParticipantsBtn = new Button("Export Participants");
-        
-        toolBar.getItems().addAll(createEventBtn, editEventBtn, deleteEventBtn, viewParticipantsBtn, exportParticipantsBtn);
+        Button attendanceReportBtn = new Button("Attendance Report");
+        Button historyBtn = new Button("Past Events");
+        Button backupBtn = new Button("Backup");
+        
+        // Shows one faculty's events, or all of them
+        facultyFilter = new ComboBox<>();
+        facultyFilter.getItems().add(ALL_FACULTIES);
+        facultyFilter.getItems().addAll(Faculty.all());
+        facultyFilter.setValue(ALL_FACULTIES);
+        facultyFilter.setOnAction(e -> refreshEvents());
+        
+        TextField eventSearchField = createSearchField("Search events", eventManager::suggestEvents,
+            event -> event.getTitle() + " - " + event.getLocation() + " (" + event.getId() + ")", this::showEvent);
+        TextField userSearchField = createSearchField("Find user", userManager::suggestUsers,
+            user -> user.getName() + " (" + user.getUsername() + ")", this::showUser);
+        
+        toolBar.getItems().addAll(createEventBtn, editEventBtn, deleteEventBtn, viewParticipantsBtn, exportParticipantsBtn,
+            attendanceReportBtn, historyBtn, backupBtn, new Separator(), new Label("Faculty:"), facultyFilter,
+            eventSearchField, userSearchField);
         
         // Create event table
         eventTable = new TableView<>();
         eventData = FXCollections.observableArrayList(eventManager.getAllEvents());
         
-        TableColumn<Event, String> idCol = new TableColumn<>("ID");
-        idCol.setCellValueFactory(new PropertyValueFactory<>("id"));
-        
-        TableColumn<Event, String> titleCol = new TableColumn<>("Title");
-        titleCol.setCellValueFactory(new PropertyValueFactory<>("title"));
-        
-        TableColumn<Event, String> dateCol = new TableColumn<>("Date");
-        dateCol.setCellValueFactory(new PropertyValueFactory<>("date"));
-        
-        TableColumn<Event, String> locationCol = new TableColumn<>("Location");
-        locationCol.setCellValueFactory(new PropertyValueFactory<>("location"));
+        TableColumn<Event, String> idCol = EventColumn.text("ID", Event::getId);
+        TableColumn<Event, String> facultyCol = EventColumn.text("Faculty", event -> Faculty.of(event.getId()));
+        TableColumn<Event, String> titleCol = EventColumn.text("Title", Event::getTitle);
+        TableColumn<Event, String> dateCol = EventColumn.text("Date", Event::getDate);
+        TableColumn<Event, String> locationCol = EventColumn.text("Location", Event::getLocation);
+        TableColumn<Event, Integer> capacityCol = EventColumn.number("Capacity", Event::getCapacity);
         
-        TableColumn<Event, Integer> capacityCol = new TableColumn<>("Capacity");
-        capacityCol.setCellValueFactory(new PropertyValueFactory<>("capacity"));
-        
-        eventTable.getColumns().addAll(idCol, titleCol, dateCol, locationCol, capacityCol);
+        eventTable.getColumns().addAll(idCol, facultyCol, titleCol, dateCol, locationCol, capacityCol);
         eventTable.setItems(eventData);
+        eventTable.setPlaceholder(new Label(eventManager.isLoaded() ? "No events" : "Loading events..."));
+        
+        // Summary panel
+        summaryTotalsLabel = new Label();
+        summaryFullLabel = new Label();
+        summaryTopLabel = new Label();
+        VBox summaryBox = new VBox(4, summaryTotalsLabel, summaryFullLabel, summaryTopLabel);
+        summaryBox.setPadding(new Insets(5));
+        summaryBox.setStyle("-fx-border-color: #cccccc; -fx-border-radius: 4;");
+        refreshSummary();
+        whenEventsLoaded(() -> {
+            eventTable.setPlaceholder(new Label("No events"));
+            refreshEvents();
+        });
+        whenEventsChangeElsewhere(this::refreshEvents);
         
         // Add components to layout
         VBox contentBox = new VBox(10);
         contentBox.setPadding(new Insets(10));
-        contentBox.getChildren().addAll(toolBar, eventTable);
+        contentBox.getChildren().addAll(toolBar, summaryBox, eventTable);
         
         root.setCenter(contentBox);
         
@@ -76,6 +108,9 @@ public class AdminDashboard extends BaseDashboard {
         deleteEventBtn.setOnAction(e -> deleteSelectedEvent());
         viewParticipantsBtn.setOnAction(e -> viewEventParticipants());
         exportParticipantsBtn.setOnAction(e -> exportParticipantsToFile());
+        attendanceReportBtn.setOnAction(e -> showAttendanceReport());
+        historyBtn.setOnAction(e -> showPastEvents());
+        backupBtn.setOnAction(e -> backupData(backupBtn));
     }
     
     private void showCreateEventDialog() {
@@ -94,10 +129,14 @@ public class AdminDashboard extends BaseDashboard {
         grid.setVgap(10);
         grid.setPadding(new Insets(20, 150, 10, 10));
         
+        ComboBox<String> facultyBox = new ComboBox<>(FXCollections.observableArrayList(Faculty.all()));
+        facultyBox.setValue(ALL_FACULTIES.equals(facultyFilter.getValue()) ? Faculty.GENERAL : facultyFilter.getValue());
         TextField titleField = new TextField();
         titleField.setPromptText("Event Title");
         TextField dateField = new TextField();
         dateField.setPromptText("YYYY-MM-DD HH:MM");
+        TextField endDateField = new TextField();
+        endDateField.setPromptText("YYYY-MM-DD HH:MM (optional)");
         TextField locationField = new TextField();
         locationField.setPromptText("Location");
         TextField capacityField = new TextField();
@@ -106,16 +145,20 @@ public class AdminDashboard extends BaseDashboard {
         descriptionArea.setPromptText("Event description");
         descriptionArea.setPrefRowCount(3);
         
-        grid.add(new Label("Title:"), 0, 0);
-        grid.add(titleField, 1, 0);
-        grid.add(new Label("Date (YYYY-MM-DD HH:MM):"), 0, 1);
-        grid.add(dateField, 1, 1);
-        grid.add(new Label("Location:"), 0, 2);
-        grid.add(locationField, 1, 2);
-        grid.add(new Label("Capacity:"), 0, 3);
-        grid.add(capacityField, 1, 3);
-        grid.add(new Label("Description:"), 0, 4);
-        grid.add(descriptionArea, 1, 4);
+        grid.add(new Label("Faculty:"), 0, 0);
+        grid.add(facultyBox, 1, 0);
+        grid.add(new Label("Title:"), 0, 1);
+        grid.add(titleField, 1, 1);
+        grid.add(new Label("Date (YYYY-MM-DD HH:MM):"), 0, 2);
+        grid.add(dateField, 1, 2);
+        grid.add(new Label("Ends (YYYY-MM-DD HH:MM):"), 0, 3);
+        grid.add(endDateField, 1, 3);
+        grid.add(new Label("Location:"), 0, 4);
+        grid.add(locationField, 1, 4);
+        grid.add(new Label("Capacity:"), 0, 5);
+        grid.add(capacityField, 1, 5);
+        grid.add(new Label("Description:"), 0, 6);
+        grid.add(descriptionArea, 1, 6);
         
         dialog.getDialogPane().setContent(grid);
         
@@ -123,14 +166,19 @@ public class AdminDashboard extends BaseDashboard {
         dialog.setResultConverter(dialogButton -> {
             if (dialogButton == createButtonType) {
                 try {
-                    String id = "EVT" + System.currentTimeMillis();
+                    String id = Faculty.qualify(facultyBox.getValue(), EventIdGenerator.getInstance().nextId());
                     String title = titleField.getText();
                     String date = dateField.getText();
                     String location = locationField.getText();
                     int capacity = Integer.parseInt(capacityField.getText());
                     String description = descriptionArea.getText();
+                    if (!isValidEndDate(date, endDateField.getText())) {
+                        return null;
+                    }
                     
-                    return new Event(id, title, description, date, location, capacity, currentUser.getUsername());
+                    Event event = new Event(id, title, description, date, location, capacity, currentUser.getUsername());
+                    event.setEndDate(endDateField.getText());
+                    return event;
                 } catch (NumberFormatException e) {
                     showError("Invalid Input", "Please enter valid numbers for capacity.");
                     return null;
@@ -142,7 +190,7 @@ public class AdminDashboard extends BaseDashboard {
         Optional<Event> result = dialog.showAndWait();
         result.ifPresent(event -> {
             eventManager.addEvent(event);
-            eventData.setAll(eventManager.getAllEvents());
+            refreshEvents();
             showSuccess("Success", "Event created successfully!");
         });
     }
@@ -154,6 +202,9 @@ public class AdminDashboard extends BaseDashboard {
             return;
         }
         
+        // Remember which version is being edited, to detect changes made at another booth meanwhile
+        long revision = eventManager.getRevision(selected.getId());
+        
         // Similar to create dialog but pre-fill with selected event data
         Dialog<Event> dialog = new Dialog<>();
         dialog.setTitle("Edit Event");
@@ -169,33 +220,43 @@ public class AdminDashboard extends BaseDashboard {
         
         TextField titleField = new TextField(selected.getTitle());
         TextField dateField = new TextField(selected.getDate());
+        TextField endDateField = new TextField(selected.getEndDate() != null ? selected.getEndDate() : "");
         TextField locationField = new TextField(selected.getLocation());
         TextField capacityField = new TextField(String.valueOf(selected.getCapacity()));
         TextArea descriptionArea = new TextArea(selected.getDescription());
         descriptionArea.setPrefRowCount(3);
         
-        grid.add(new Label("Title:"), 0, 0);
-        grid.add(titleField, 1, 0);
-        grid.add(new Label("Date (YYYY-MM-DD HH:MM):"), 0, 1);
-        grid.add(dateField, 1, 1);
-        grid.add(new Label("Location:"), 0, 2);
-        grid.add(locationField, 1, 2);
-        grid.add(new Label("Capacity:"), 0, 3);
-        grid.add(capacityField, 1, 3);
-        grid.add(new Label("Description:"), 0, 4);
-        grid.add(descriptionArea, 1, 4);
+        grid.add(new Label("Faculty:"), 0, 0);
+        grid.add(new Label(Faculty.of(selected.getId())), 1, 0); // Part of the ID, so it cannot change
+        grid.add(new Label("Title:"), 0, 1);
+        grid.add(titleField, 1, 1);
+        grid.add(new Label("Date (YYYY-MM-DD HH:MM):"), 0, 2);
+        grid.add(dateField, 1, 2);
+        grid.add(new Label("Ends (YYYY-MM-DD HH:MM):"), 0, 3);
+        grid.add(endDateField, 1, 3);
+        grid.add(new Label("Location:"), 0, 4);
+        grid.add(locationField, 1, 4);
+        grid.add(new Label("Capacity:"), 0, 5);
+        grid.add(capacityField, 1, 5);
+        grid.add(new Label("Description:"), 0, 6);
+        grid.add(descriptionArea, 1, 6);
         
         dialog.getDialogPane().setContent(grid);
         
         dialog.setResultConverter(dialogButton -> {
             if (dialogButton == saveButtonType) {
                 try {
-                    selected.setTitle(titleField.getText());
-                    selected.setDate(dateField.getText());
-                    selected.setLocation(locationField.getText());
-                    selected.setCapacity(Integer.parseInt(capacityField.getText()));
-                    selected.setDescription(descriptionArea.getText());
-                    return selected;
+                    if (!isValidEndDate(dateField.getText(), endDateField.getText())) {
+                        return null;
+                    }
+                    Event edited = selected.copyDetails();
+                    edited.setTitle(titleField.getText());
+                    edited.setDate(dateField.getText());
+                    edited.setEndDate(endDateField.getText());
+                    edited.setLocation(locationField.getText());
+                    edited.setCapacity(Integer.parseInt(capacityField.getText()));
+                    edited.setDescription(descriptionArea.getText());
+                    return edited;
                 } catch (NumberFormatException e) {
                     showError("Invalid Input", "Please enter valid numbers for capacity.");
                     return null;
@@ -205,12 +266,33 @@ public class AdminDashboard extends BaseDashboard {
         });
         
         dialog.showAndWait().ifPresent(event -> {
-            eventManager.updateEvent(event);
-            eventData.setAll(eventManager.getAllEvents());
-            showSuccess("Success", "Event updated successfully!");
+            boolean updated = eventManager.updateEvent(event, revision);
+            refreshEvents();
+            if (updated) {
+                showSuccess("Success", "Event updated successfully!");
+            } else {
+                showError("Error", "The event was changed or deleted elsewhere while you were editing it. Please check it and edit it again.");
+            }
         });
     }
     
+    /**
+     * Checks an end date entered in an event dialog, showing an error if it is invalid.
+     * An empty end date is valid; the event is then taken to last an hour.
+     */
+    private boolean isValidEndDate(String date, String endDate) {
+        if (endDate == null || endDate.trim().isEmpty()) {
+            return true;
+        }
+        long start = Event.toEpochMinute(date);
+        long end = Event.toEpochMinute(endDate);
+        if (start == Event.NO_TIME || end == Event.NO_TIME || end <= start) {
+            showError("Invalid Input", "The end must be a time in the format YYYY-MM-DD HH:MM after the start.");
+            return false;
+        }
+        return true;
+    }
+    
     private void deleteSelectedEvent() {
         Event selected = eventTable.getSelectionModel().getSelectedItem();
         if (selected == null) {
@@ -226,7 +308,7 @@ public class AdminDashboard extends BaseDashboard {
         Optional<ButtonType> result = alert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
             eventManager.deleteEvent(selected.getId());
-            eventData.setAll(eventManager.getAllEvents());
+            refreshEvents();
             showSuccess("Success", "Event deleted successfully!");
         }
     }
@@ -252,6 +334,40 @@ public class AdminDashboard extends BaseDashboard {
         alert.showAndWait();
     }
     
+    private void showPastEvents() {
+        List<String> lines = eventManager.getArchivedEvents().stream()
+            .map(event -> event.getDate() + "  " + event.getTitle() + " - " + event.getRegisteredCount() + "/" +
+                event.getCapacity() + " participants")
+            .collect(Collectors.toList());
+        
+        ListView<String> listView = new ListView<>();
+        listView.getItems().addAll(lines);
+        listView.setPlaceholder(new Label("No events have been archived yet"));
+        
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Past Events");
+        alert.setHeaderText("Events archived after they ended (" + lines.size() + ")");
+        alert.getDialogPane().setContent(listView);
+        alert.setResizable(true);
+        alert.getDialogPane().setPrefSize(500, 400);
+        alert.showAndWait();
+    }
+    
+    /**
+     * Writes a backup of all events and users while registrations go on, see {@link Backup}.
+     */
+    private void backupData(Button backupBtn) {
+        backupBtn.setDisable(true);
+        Backup.createInBackground(eventManager, userManager).whenComplete((file, error) -> Platform.runLater(() -> {
+            backupBtn.setDisable(false);
+            if (error == null) {
+                showSuccess("Backup", "Events and users backed up to " + file.toAbsolutePath());
+            } else {
+                showError("Error", "Failed to write backup: " + error.getMessage());
+            }
+        }));
+    }
+    
     private void exportParticipantsToFile() {
         Event selected = eventTable.getSelectionModel().getSelectedItem();
         if (selected == null) {
@@ -285,6 +401,149 @@ public class AdminDashboard extends BaseDashboard {
         }
     }
     
+    /**
+     * Selects a search result in the table, showing all faculties if it is not listed.
+     */
+    private void showEvent(Event event) {
+        if (!eventData.contains(event)) {
+            facultyFilter.setValue(ALL_FACULTIES);
+            refreshEvents();
+        }
+        eventTable.getSelectionModel().select(event);
+        eventTable.scrollTo(event);
+    }
+    
+    private void showUser(User user) {
+        String registrations = user instanceof Student
+            ? "\nRegistered events: " + ((Student) user).getRegisteredEvents().size() : "";
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("User");
+        alert.setHeaderText(user.getName());
+        alert.setContentText(String.format("Username: %s\nRole: %s\nEmail: %s\nPhone: %s%s",
+            user.getUsername(), user.getRole(), user.getEmail(), user.getPhoneNumber(), registrations));
+        alert.show();
+    }
+    
+    private void refreshEvents() {
+        String faculty = facultyFilter.getValue();
+        eventData.setAll(ALL_FACULTIES.equals(faculty) ? eventManager.getAllEvents() : eventManager.getEventsByFaculty(faculty));
+        refreshSummary();
+    }
+    
+    private void refreshSummary() {
+        EventStatistics stats = eventManager.getStatistics();
+        summaryTotalsLabel.setText(String.format("Registrations: %d / %d seats (%.1f%% full) across %d events",
+            stats.getTotalRegistrations(), stats.getTotalCapacity(), stats.getFillPercentage(), stats.getEventCount()));
+        summaryFullLabel.setText(String.format("Full events: %d    Nearly full (%.0f%%+): %d    Your events: %.1f%% full",
+            stats.getFullEventIds().size(), EventStatistics.NEARLY_FULL_RATIO * 100, stats.getNearlyFullEventIds().size(),
+            stats.getOrganizerFillPercentage(currentUser.getUsername())));
+        List<String> topTitles = stats.getTopEventIds(3).stream()
+            .map(id -> eventManager.getEventById(id)
+                .map(event -> event.getTitle() + " (" + event.getRegisteredCount() + ")")
+                .orElse(id))
+            .collect(Collectors.toList());
+        summaryTopLabel.setText("Most popular: " + (topTitles.isEmpty() ? "-" : String.join(", ", topTitles)));
+    }
+    
+    private void showAttendanceReport() {
+        List<Event> events = eventManager.getAllEvents();
+        
+        ComboBox<Event> firstEventBox = createEventComboBox(events);
+        ComboBox<Event> secondEventBox = createEventComboBox(events);
+        ComboBox<String> operationBox = new ComboBox<>();
+        operationBox.getItems().addAll("Attended both", "Attended either", "Attended first but not second");
+        operationBox.setValue("Attended both");
+        Button runBtn = new Button("Run");
+        
+        TextField datePrefixField = new TextField();
+        datePrefixField.setPromptText("e.g. 2025- or 2025-09");
+        Button countBtn = new Button("Count");
+        CheckBox includeArchivedBox = new CheckBox("Include archived events");
+        Label uniqueLabel = new Label();
+        
+        ListView<String> resultList = new ListView<>();
+        Label resultLabel = new Label();
+        
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(10));
+        grid.add(new Label("First event:"), 0, 0);
+        grid.add(firstEventBox, 1, 0);
+        grid.add(new Label("Second event:"), 0, 1);
+        grid.add(secondEventBox, 1, 1);
+        grid.add(new Label("Students who:"), 0, 2);
+        grid.add(new HBox(10, operationBox, runBtn), 1, 2);
+        grid.add(resultLabel, 0, 3, 2, 1);
+        grid.add(resultList, 0, 4, 2, 1);
+        grid.add(new Label("Unique attendees for dates starting with:"), 0, 5);
+        grid.add(new HBox(10, datePrefixField, countBtn, includeArchivedBox), 1, 5);
+        grid.add(uniqueLabel, 0, 6, 2, 1);
+        
+        runBtn.setOnAction(e -> {
+            Event first = firstEventBox.getValue();
+            Event second = secondEventBox.getValue();
+            if (first == null || second == null) {
+                resultLabel.setText("Please select two events.");
+                return;
+            }
+            List<String> students;
+            switch (operationBox.getValue()) {
+                case "Attended either":
+                    students = eventManager.getStudentsInEither(first.getId(), second.getId());
+                    break;
+                case "Attended first but not second":
+                    students = eventManager.getStudentsInFirstOnly(first.getId(), second.getId());
+                    break;
+                default:
+                    students = eventManager.getStudentsInBoth(first.getId(), second.getId());
+                    break;
+            }
+            resultList.getItems().setAll(students);
+            resultLabel.setText(students.size() + " student(s)");
+        });
+        
+        countBtn.setOnAction(e -> {
+            String prefix = datePrefixField.getText().trim();
+            List<String> eventIds = events.stream()
+                .filter(event -> event.getDate() != null && event.getDate().startsWith(prefix))
+                .map(Event::getId)
+                .collect(Collectors.toList());
+            // The archive is only read when asked for, it holds every past event
+            List<Event> archived = includeArchivedBox.isSelected()
+                ? eventManager.getArchivedEvents().stream()
+                    .filter(event -> event.getDate() != null && event.getDate().startsWith(prefix))
+                    .collect(Collectors.toList())
+                : Collections.emptyList();
+            uniqueLabel.setText(eventManager.countUniqueAttendees(eventIds, archived) + " unique attendee(s) across " +
+                (eventIds.size() + archived.size()) + " event(s)");
+        });
+        
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Attendance Report");
+        alert.setHeaderText("Compare event attendance");
+        alert.getDialogPane().setContent(grid);
+        alert.setResizable(true);
+        alert.getDialogPane().setPrefSize(600, 550);
+        alert.showAndWait();
+    }
+    
+    private ComboBox<Event> createEventComboBox(List<Event> events) {
+        ComboBox<Event> comboBox = new ComboBox<>(FXCollections.observableArrayList(events));
+        comboBox.setConverter(new StringConverter<Event>() {
+            @Override
+            public String toString(Event event) {
+                return event == null ? "" : event.getTitle() + " (" + event.getDate() + ")";
+            }
+            
+            @Override
+            public Event fromString(String string) {
+                return null;
+            }
+        });
+        return comboBox;
+    }
+    
     private void showError(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(title);
@@ -0,0 +1,147 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Point-in-time copy of all events and users, written to a zip file while the app keeps running.
+ * Copying the data files instead can catch them in the middle of a rewrite.
+ * {@link #capture(EventManager, UserManager)} copies the data in memory while changes wait,
+ * which only takes as long as formatting the event fields and copying the participant ID
+ * arrays; the participant usernames and the file are written afterwards on a background thread.
+ * The zip holds events.txt and users.txt in the text storage format and backup.properties
+ * with the change log sequence the copy matches, see {@link ChangeLog}.
+ */
+public class Backup {
+    private static final String DIRECTORY = "backups";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final LocalDateTime created;
+    private final List<String> eventFields = new ArrayList<>(); // Event lines without participants
+    private final List<IntSet> participants = new ArrayList<>(); // Participant IDs of the same events
+    private final List<String> userLines = new ArrayList<>();
+    private long sequence;
+
+    private Backup() {
+        this.created = LocalDateTime.now();
+    }
+
+    /**
+     * Copies all events and users at one point in time.
+     * Participant lists that are not in memory are read beforehand, while changes can still
+     * be made, so the copy itself does not wait for storage.
+     */
+    public static Backup capture(EventManager eventManager, UserManager userManager) {
+        for (Event event : eventManager.getAllEvents()) {
+            if (!event.isParticipantListLoaded()) {
+                event.getParticipantIds();
+            }
+        }
+        userManager.getAllUsers(); // Waits for loading outside the lock
+        Backup backup = new Backup();
+        eventManager.runLocked(() -> {
+            backup.sequence = ChangeLog.getInstance().getLastSequence();
+            for (Event event : eventManager.getAllEvents()) {
+                backup.eventFields.add(event.toMetadataString());
+                backup.participants.add(event.getParticipantIds());
+            }
+            for (User user : userManager.getAllUsers()) {
+                backup.userLines.add(user.toFileString());
+            }
+        });
+        return backup;
+    }
+
+    public int getEventCount() {
+        return eventFields.size();
+    }
+
+    public int getUserCount() {
+        return userLines.size();
+    }
+
+    /**
+     * Captures a backup and writes it to backups/iium-backup-&lt;time&gt;.zip, both on a
+     * background thread.
+     * @return Completes with the file once it is written
+     */
+    public static CompletableFuture<Path> createInBackground(EventManager eventManager, UserManager userManager) {
+        CompletableFuture<Path> written = new CompletableFuture<>();
+        Thread writer = new Thread(() -> {
+            try {
+                Backup backup = capture(eventManager, userManager);
+                written.complete(backup.writeTo(Paths.get(DIRECTORY, "iium-backup-" + backup.created.format(FILE_TIME) + ".zip")));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error writing backup: " + e.getMessage());
+                written.completeExceptionally(e);
+            }
+        }, "backup-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return written;
+    }
+
+    /**
+     * Writes the backup to a zip file. It is written under a temporary name and renamed once
+     * complete, so the file never holds a partial backup.
+     * @return The file
+     */
+    public Path writeTo(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                Writer writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+                zip.putNextEntry(new ZipEntry("events.txt"));
+                writer.write(RecordTokenizer.HEADER);
+                writer.write('\n');
+                for (int i = 0; i < eventFields.size(); i++) {
+                    writer.write(eventFields.get(i));
+                    String participantList = Event.toParticipantsString(participants.get(i));
+                    if (!participantList.isEmpty()) {
+                        writer.write(',');
+                        writer.write(participantList);
+                    }
+                    writer.write('\n');
+                }
+                writer.flush();
+                zip.closeEntry();
+                zip.putNextEntry(new ZipEntry("users.txt"));
+                writer.write(RecordTokenizer.HEADER);
+                writer.write('\n');
+                for (String line : userLines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+                writer.flush();
+                zip.closeEntry();
+                zip.putNextEntry(new ZipEntry("backup.properties"));
+                Properties properties = new Properties();
+                properties.setProperty("created", created.toString());
+                properties.setProperty("changeLogSequence", Long.toString(sequence));
+                properties.setProperty("events", Integer.toString(eventFields.size()));
+                properties.setProperty("users", Integer.toString(userLines.size()));
+                properties.store(writer, "IIUM event participation backup");
+                writer.flush();
+                zip.closeEntry();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return file;
+    }
+}
@@ -1,17 +1,31 @@
 package iium.event.participation;
 
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.geometry.Side;
+import javafx.scene.Scene;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Base class for all dashboards.
  * Provides common functionality and layout for both Admin and Student dashboards.
  */
 public class BaseDashboard {
+    /** Suggestions shown under a search field, see {@link #createSearchField}. */
+    protected static final int SEARCH_SUGGESTIONS = 8;
+    
     protected final Stage primaryStage;
     protected final User currentUser;
     protected final UserManager userManager;
@@ -84,6 +98,89 @@ public class BaseDashboard {
         root.setCenter(new Label("Welcome to the Dashboard"));
     }
     
+    /**
+     * Runs the given action on the FX thread once the events have been loaded.
+     * Dashboards use this to fill their tables when startup loading finishes. The action
+     * is always posted, so it runs after the dashboard constructor has completed.
+     * @param action The action to run
+     */
+    protected void whenEventsLoaded(Runnable action) {
+        eventManager.whenLoaded().thenRun(() -> Platform.runLater(action));
+    }
+    
+    /**
+     * Runs an action on the JavaFX thread whenever another app instance changed events, see
+     * {@link ChangeLog}. Stops once the dashboard has been removed from its window, e.g. on logout.
+     * @param action The action to run, usually a refresh
+     */
+    protected void whenEventsChangeElsewhere(Runnable action) {
+        Runnable listener = () -> Platform.runLater(() -> {
+            if (root.getScene() != null) { // Posted before the dashboard was closed
+                action.run();
+            }
+        });
+        eventManager.addExternalChangeListener(listener);
+        whenClosed(() -> eventManager.removeExternalChangeListener(listener));
+    }
+
+    /**
+     * Runs an action once the dashboard has been removed from its window, e.g. on logout.
+     * Dashboards use this to remove the listeners they added to the managers, which outlive
+     * them and would otherwise keep their controls reachable.
+     * @param action The action to run, on the JavaFX thread
+     */
+    protected void whenClosed(Runnable action) {
+        root.sceneProperty().addListener(new ChangeListener<Scene>() {
+            @Override
+            public void changed(ObservableValue<? extends Scene> observable, Scene oldScene, Scene newScene) {
+                if (oldScene != null && newScene == null) {
+                    observable.removeListener(this);
+                    action.run();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Creates a type-ahead search field. On every keystroke it asks for suggestions and lists
+     * them under the field; Enter or a click picks one.
+     * @param prompt The prompt text
+     * @param suggest Gets up to the given number of suggestions for the typed text, quickly
+     * @param describe The text shown for a suggestion
+     * @param choose Called with the picked suggestion
+     */
+    protected <T> TextField createSearchField(String prompt, BiFunction<String, Integer, List<T>> suggest,
+            Function<T, String> describe, Consumer<T> choose) {
+        TextField field = new TextField();
+        field.setPromptText(prompt);
+        ContextMenu suggestions = new ContextMenu();
+        field.textProperty().addListener((obs, oldText, newText) -> {
+            suggestions.getItems().clear();
+            for (T item : suggest.apply(newText, SEARCH_SUGGESTIONS)) {
+                MenuItem menuItem = new MenuItem(describe.apply(item));
+                menuItem.setOnAction(e -> choose.accept(item));
+                suggestions.getItems().add(menuItem);
+            }
+            if (suggestions.getItems().isEmpty()) {
+                suggestions.hide();
+            } else if (!suggestions.isShowing() && field.getScene() != null) {
+                suggestions.show(field, Side.BOTTOM, 0, 0);
+            }
+        });
+        field.setOnAction(e -> {
+            if (!suggestions.getItems().isEmpty()) {
+                suggestions.getItems().get(0).fire();
+                suggestions.hide();
+            }
+        });
+        field.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (!focused) {
+                suggestions.hide();
+            }
+        });
+        return field;
+    }
+    
     protected void showProfile() {
         // Show user profile information
         // This can be overridden by subclasses for custom profile views
@@ -121,7 +218,7 @@ public class BaseDashboard {
         dialog.showAndWait().ifPresent(newPassword -> {
             if (!newPassword.trim().isEmpty()) {
                 currentUser.setPassword(newPassword);
-                userManager.saveUsers();
+                userManager.saveUser(currentUser);
                 
                 javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.INFORMATION);
                 alert.setTitle("Success");
@@ -0,0 +1,116 @@
+package iium.event.participation;
+
+/**
+ * One entry of the shared change log, see {@link ChangeLog}.
+ * Applying an entry is idempotent, so an entry that is seen twice does no harm.
+ */
+public class Change {
+    public enum Type {
+        /** An event was added or its details changed. The data is the event's metadata line. */
+        EVENT_SAVED,
+        /** An event was deleted. */
+        EVENT_DELETED,
+        /** A user registered for an event. The data is "registered count,username". */
+        REGISTERED,
+        /** A user unregistered from an event. The data is "registered count,username". */
+        UNREGISTERED,
+        /** A user was added or changed. The data is the user's file line. */
+        USER_SAVED
+    }
+
+    private final long sequence;
+    private final String instanceId;
+    private final Type type;
+    private final String key;
+    private final String data;
+
+    public Change(long sequence, String instanceId, Type type, String key, String data) {
+        this.sequence = sequence;
+        this.instanceId = instanceId;
+        this.type = type;
+        this.key = key;
+        this.data = data == null ? "" : data;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the ID of the app instance that made the change.
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ID of the changed event, or the username of the changed user.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * Formats the change as one tab-separated log line, without the line break.
+     */
+    public String toLogLine() {
+        return sequence + "\t" + escape(instanceId) + "\t" + type + "\t" + escape(key) + "\t" + escape(data);
+    }
+
+    /**
+     * Parses a line written by {@link #toLogLine()}.
+     * @return The change, or null if the line is invalid
+     */
+    public static Change fromLogLine(String line) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length != 5) {
+            return null;
+        }
+        try {
+            return new Change(Long.parseLong(parts[0]), unescape(parts[1]), Type.valueOf(parts[2]),
+                unescape(parts[3]), unescape(parts[4]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
@@ -0,0 +1,393 @@
+package iium.event.participation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Shared log of changes for several app instances using the same data files.
+ * Every change is made while holding an exclusive lock on the log file: the instance first
+ * applies the entries other instances appended since it last looked, then validates and makes
+ * its change against that up-to-date state, writes the data files and appends its own entries.
+ * A watcher thread applies other instances' entries as they appear, so each instance keeps its
+ * in-memory state current without reloading the data files.
+ * When the log grows too large it is restarted under a new generation; instances that see a
+ * new generation reload the data files once, since those already contain every change.
+ * Enabled with -Diium.shared=true; otherwise changes are only numbered locally.
+ */
+public class ChangeLog {
+    private static final String LOG_FILE = "events.changes";
+    private static final String HEADER_PREFIX = "IIUM-CHANGES ";
+    private static final long COMPACT_BYTES = 1 << 20;
+    private static final long POLL_INTERVAL_MS = 2000;
+    private static ChangeLog instance;
+
+    /**
+     * Receives the changes made by other instances.
+     */
+    public interface Listener {
+        /**
+         * Applies a change that another instance has already written to the data files.
+         */
+        void apply(Change change);
+
+        /**
+         * Reloads everything from the data files, after entries were lost to a log restart.
+         */
+        void reload();
+    }
+
+    private final Path path; // null when sharing is disabled
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Change>> commitListeners = new CopyOnWriteArrayList<>();
+    private String generation; // Header line of the log as last read, null if there was no log
+    private long position; // Bytes of the log already applied
+    private volatile long lastSequence;
+    private Thread watcher;
+
+    private ChangeLog(Path path) {
+        this.path = path;
+        if (path != null) {
+            readStartPosition();
+        }
+    }
+
+    public static synchronized ChangeLog getInstance() {
+        if (instance == null) {
+            instance = new ChangeLog(Boolean.getBoolean("iium.shared") ? Paths.get(LOG_FILE) : null);
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Adds a listener for the changes made by this instance, called in sequence order while
+     * the log is still locked, see {@link #runLocked(Runnable)}.
+     */
+    public void addCommitListener(Consumer<Change> listener) {
+        commitListeners.add(listener);
+    }
+
+    /**
+     * Gets the sequence number of the last change made or applied by this instance.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Runs an action while no change can be made or applied in this instance, e.g. to take a
+     * snapshot that matches {@link #getLastSequence()}.
+     */
+    public synchronized void runLocked(Runnable action) {
+        action.run();
+    }
+
+    /**
+     * The entries of one write, appended to the log once the write action returns.
+     */
+    public class Batch {
+        private final List<Change> changes = new ArrayList<>();
+
+        /**
+         * Adds an entry.
+         * @return The sequence number of the entry
+         */
+        public long add(Change.Type type, String key, String data) {
+            Change change = new Change(lastSequence + changes.size() + 1, instanceId, type, key, data);
+            changes.add(change);
+            return change.getSequence();
+        }
+    }
+
+    /**
+     * Makes a change under the log lock.
+     * Other instances' entries are applied before the action runs, so the action sees the
+     * current state and can reject a change that conflicts with it.
+     * @param action Validates and makes the change, writes the data files and adds log entries
+     * @return The result of the action
+     */
+    public synchronized <T> T write(Function<Batch, T> action) {
+        if (path == null) {
+            return runAction(action);
+        }
+        FileChannel channel = null;
+        FileLock lock = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            lock = channel.lock();
+            readNewChanges(channel);
+            if (generation == null || channel.size() > COMPACT_BYTES) {
+                restart(channel);
+            }
+            if (channel.size() > position) {
+                // Cut off the incomplete last line of an instance that crashed while appending
+                channel.truncate(position);
+            }
+        } catch (IOException e) {
+            // Keep working on the local files; other instances will not see this change
+            System.err.println("Error locking change log: " + e.getMessage());
+            close(channel);
+            return runAction(action);
+        }
+        try {
+            Batch batch = new Batch();
+            T result = action.apply(batch);
+            if (!batch.changes.isEmpty()) {
+                appendChanges(channel, batch.changes);
+                notifyCommitted(batch.changes);
+            }
+            return result;
+        } finally {
+            try {
+                lock.release();
+            } catch (IOException e) {
+                System.err.println("Error unlocking change log: " + e.getMessage());
+            }
+            close(channel);
+        }
+    }
+
+    private void appendChanges(FileChannel channel, List<Change> changes) {
+        lastSequence += changes.size();
+        try {
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            for (Change change : changes) {
+                lines.write((change.toLogLine() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            writeFully(channel, ByteBuffer.wrap(lines.toByteArray()), position);
+            channel.force(false);
+            position += lines.size();
+        } catch (IOException e) {
+            System.err.println("Error writing change log, other instances will not see this change: " + e.getMessage());
+        }
+    }
+
+    private void notifyCommitted(List<Change> changes) {
+        for (Change change : changes) {
+            for (Consumer<Change> listener : commitListeners) {
+                listener.accept(change);
+            }
+        }
+    }
+
+    private static void close(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing change log: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applies the entries other instances appended since the last call.
+     */
+    public synchronized void catchUp() {
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.lock(0, Long.MAX_VALUE, true); // Shared, released when the channel is closed
+            readNewChanges(channel);
+        } catch (IOException e) {
+            System.err.println("Error reading change log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a daemon thread that applies other instances' changes as they are logged.
+     */
+    public synchronized void startWatching() {
+        if (path == null || watcher != null) {
+            return;
+        }
+        watcher = new Thread(this::watch, "change-log-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch() {
+        Path directory = path.toAbsolutePath().getParent();
+        try (WatchService service = directory.getFileSystem().newWatchService()) {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (true) {
+                WatchKey key = service.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                boolean logChanged = false;
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        logChanged |= path.getFileName().equals(event.context());
+                    }
+                    key.reset();
+                }
+                // Shared network folders do not always report changes, so check on every timeout too
+                if (logChanged || (Files.exists(path) && Files.size(path) != position)) {
+                    catchUp();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error watching change log: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> T runAction(Function<Batch, T> action) {
+        Batch batch = new Batch();
+        T result = action.apply(batch);
+        lastSequence += batch.changes.size();
+        notifyCommitted(batch.changes);
+        return result;
+    }
+
+    /**
+     * Skips the entries that are already in the data files, which are loaded after this.
+     */
+    private void readStartPosition() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.lock(0, Long.MAX_VALUE, true); // Shared, released when the channel is closed
+            byte[] header = readHeader(channel);
+            if (header == null) {
+                return;
+            }
+            generation = new String(header, 0, header.length - 1, StandardCharsets.UTF_8);
+            position = header.length;
+            forEachLine(readFrom(channel, position), change -> lastSequence = Math.max(lastSequence, change.getSequence()));
+        } catch (IOException e) {
+            System.err.println("Error reading change log: " + e.getMessage());
+        }
+    }
+
+    private void readNewChanges(FileChannel channel) throws IOException {
+        byte[] header = readHeader(channel);
+        if (header == null) {
+            return;
+        }
+        String current = new String(header, 0, header.length - 1, StandardCharsets.UTF_8);
+        if (!current.equals(generation)) {
+            boolean missedEntries = generation != null;
+            generation = current;
+            position = header.length;
+            if (missedEntries) {
+                // The log was restarted, entries this instance had not applied yet are gone
+                for (Listener listener : listeners) {
+                    listener.reload();
+                }
+                byte[] bytes = readFrom(channel, position);
+                forEachLine(bytes, change -> lastSequence = Math.max(lastSequence, change.getSequence()));
+                return;
+            }
+        }
+        byte[] bytes = readFrom(channel, position);
+        forEachLine(bytes, change -> {
+            lastSequence = Math.max(lastSequence, change.getSequence());
+            if (!instanceId.equals(change.getInstanceId())) {
+                for (Listener listener : listeners) {
+                    listener.apply(change);
+                }
+            }
+        });
+    }
+
+    /**
+     * Empties the log and starts a new generation. Everything logged so far is in the data files.
+     */
+    private void restart(FileChannel channel) throws IOException {
+        generation = HEADER_PREFIX + UUID.randomUUID();
+        byte[] header = (generation + "\n").getBytes(StandardCharsets.UTF_8);
+        channel.truncate(0);
+        writeFully(channel, ByteBuffer.wrap(header), 0);
+        channel.force(false);
+        position = header.length;
+    }
+
+    private static byte[] readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 256));
+        channel.read(buffer, 0);
+        int end = indexOf(buffer.array(), 0, '\n');
+        if (end < 0 || end >= buffer.position()) {
+            return null;
+        }
+        byte[] header = new byte[end + 1];
+        System.arraycopy(buffer.array(), 0, header, 0, header.length);
+        return header;
+    }
+
+    private byte[] readFrom(FileChannel channel, long start) throws IOException {
+        long size = channel.size();
+        if (size <= start) {
+            return new byte[0];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (size - start));
+        while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0) {
+            // Keep reading until the buffer is full
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Parses the complete lines of newly read log bytes and moves the position past them.
+     * An incomplete last line is left for the next read.
+     */
+    private void forEachLine(byte[] bytes, Consumer<Change> consumer) {
+        int start = 0;
+        int end;
+        while ((end = indexOf(bytes, start, '\n')) >= 0) {
+            Change change = Change.fromLogLine(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+            if (change != null) {
+                consumer.accept(change);
+            }
+            position += end + 1 - start;
+            start = end + 1;
+        }
+    }
+
+    private static int indexOf(byte[] bytes, int from, char c) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package iium.event.participation;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of non-negative ints, laid out like a Roaring bitmap.
+ * Values are split by their upper 16 bits into chunks; a chunk holding few values is a
+ * sorted char array, a dense chunk is a 65536-bit bitmap. Set algebra works chunk by chunk.
+ */
+public class CompressedBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int chunkCount;
+
+    public CompressedBitmap() {
+        this.keys = new char[0];
+        this.containers = new Container[0];
+    }
+
+    /**
+     * Builds a bitmap from the members of an IntSet.
+     */
+    public static CompressedBitmap of(IntSet values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        values.forEach(bitmap::add);
+        return bitmap;
+    }
+
+    public boolean add(int value) {
+        char high = (char) (value >>> 16);
+        int index = findChunk(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, high, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add((char) value);
+        return containers[index].cardinality() != before;
+    }
+
+    public boolean remove(int value) {
+        int index = findChunk((char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        Container updated = container.remove((char) value);
+        if (updated.cardinality() == 0) {
+            removeChunk(index);
+        } else {
+            containers[index] = updated;
+        }
+        return updated.cardinality() != before;
+    }
+
+    public boolean contains(int value) {
+        int index = findChunk((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return chunkCount == 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < chunkCount; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public CompressedBitmap copy() {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0; i < chunkCount; i++) {
+            result.appendChunk(keys[i], containers[i].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Values present in both bitmaps.
+     */
+    public static CompressedBitmap and(CompressedBitmap a, CompressedBitmap b) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.chunkCount && j < b.chunkCount) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container chunk = a.containers[i].and(b.containers[j]);
+                if (chunk.cardinality() > 0) {
+                    result.appendChunk(a.keys[i], chunk);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Values present in either bitmap.
+     */
+    public static CompressedBitmap or(CompressedBitmap a, CompressedBitmap b) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.chunkCount || j < b.chunkCount) {
+            if (j >= b.chunkCount || (i < a.chunkCount && a.keys[i] < b.keys[j])) {
+                result.appendChunk(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i >= a.chunkCount || a.keys[i] > b.keys[j]) {
+                result.appendChunk(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.appendChunk(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Values present in a but not in b.
+     */
+    public static CompressedBitmap andNot(CompressedBitmap a, CompressedBitmap b) {
+        CompressedBitmap result = new CompressedBitmap();
+        int j = 0;
+        for (int i = 0; i < a.chunkCount; i++) {
+            while (j < b.chunkCount && b.keys[j] < a.keys[i]) {
+                j++;
+            }
+            Container chunk = j < b.chunkCount && b.keys[j] == a.keys[i]
+                ? a.containers[i].andNot(b.containers[j])
+                : a.containers[i].copy();
+            if (chunk.cardinality() > 0) {
+                result.appendChunk(a.keys[i], chunk);
+            }
+        }
+        return result;
+    }
+
+    private int findChunk(char high) {
+        return Arrays.binarySearch(keys, 0, chunkCount, high);
+    }
+
+    private void insertChunk(int index, char high, Container container) {
+        if (chunkCount == keys.length) {
+            int capacity = Math.max(2, chunkCount * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, chunkCount - index);
+        System.arraycopy(containers, index, containers, index + 1, chunkCount - index);
+        keys[index] = high;
+        containers[index] = container;
+        chunkCount++;
+    }
+
+    private void appendChunk(char high, Container container) {
+        insertChunk(chunkCount, high, container);
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(keys, index + 1, keys, index, chunkCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, chunkCount - index - 1);
+        containers[--chunkCount] = null;
+    }
+
+    /**
+     * The low 16 bits of the values in one chunk.
+     * Mutating operations return the container to keep, which may be a converted one.
+     */
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract Container copy();
+
+        abstract BitmapContainer toBitmap();
+
+        Container and(Container other) {
+            if (this instanceof BitmapContainer && other instanceof BitmapContainer) {
+                return ((BitmapContainer) this).combine((BitmapContainer) other, Operation.AND).shrink();
+            }
+            // At least one side is small: probe the other side for each of its values
+            ArrayContainer small = (ArrayContainer) (this instanceof ArrayContainer ? this : other);
+            Container large = small == this ? other : this;
+            ArrayContainer result = new ArrayContainer(small.size);
+            for (int i = 0; i < small.size; i++) {
+                if (large.contains(small.values[i])) {
+                    result.values[result.size++] = small.values[i];
+                }
+            }
+            return result;
+        }
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                && cardinality() + other.cardinality() <= ARRAY_LIMIT) {
+                return ((ArrayContainer) this).merge((ArrayContainer) other);
+            }
+            return toBitmap().combine(other.toBitmap(), Operation.OR).shrink();
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer) {
+                ArrayContainer source = (ArrayContainer) this;
+                ArrayContainer result = new ArrayContainer(source.size);
+                for (int i = 0; i < source.size; i++) {
+                    if (!other.contains(source.values[i])) {
+                        result.values[result.size++] = source.values[i];
+                    }
+                }
+                return result;
+            }
+            return ((BitmapContainer) this).combine(other.toBitmap(), Operation.AND_NOT).shrink();
+        }
+    }
+
+    private enum Operation {
+        AND, OR, AND_NOT
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int size;
+
+        ArrayContainer() {
+            this(4);
+        }
+
+        ArrayContainer(int capacity) {
+            this.values = new char[Math.max(1, capacity)];
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, size * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            ArrayContainer result = new ArrayContainer(size);
+            System.arraycopy(values, 0, result.values, 0, size);
+            result.size = size;
+            return result;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer result = new BitmapContainer();
+            for (int i = 0; i < size; i++) {
+                result.set(values[i]);
+            }
+            return result;
+        }
+
+        ArrayContainer merge(ArrayContainer other) {
+            ArrayContainer result = new ArrayContainer(size + other.size);
+            int i = 0;
+            int j = 0;
+            while (i < size || j < other.size) {
+                char next;
+                if (j >= other.size || (i < size && values[i] < other.values[j])) {
+                    next = values[i++];
+                } else if (i >= size || values[i] > other.values[j]) {
+                    next = other.values[j++];
+                } else {
+                    next = values[i++];
+                    j++;
+                }
+                result.values[result.size++] = next;
+            }
+            return result;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words = new long[BITMAP_WORDS];
+        private int cardinality;
+
+        void set(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+        }
+
+        @Override
+        Container add(char value) {
+            set(value);
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return shrink();
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer result = new BitmapContainer();
+            System.arraycopy(words, 0, result.words, 0, BITMAP_WORDS);
+            result.cardinality = cardinality;
+            return result;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return this;
+        }
+
+        BitmapContainer combine(BitmapContainer other, Operation operation) {
+            BitmapContainer result = new BitmapContainer();
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word;
+                switch (operation) {
+                    case AND:
+                        word = words[w] & other.words[w];
+                        break;
+                    case OR:
+                        word = words[w] | other.words[w];
+                        break;
+                    default:
+                        word = words[w] & ~other.words[w];
+                        break;
+                }
+                result.words[w] = word;
+                count += Long.bitCount(word);
+            }
+            result.cardinality = count;
+            return result;
+        }
+
+        /**
+         * Converts back to an array container once the chunk is sparse again.
+         */
+        Container shrink() {
+            if (cardinality > ARRAY_LIMIT) {
+                return this;
+            }
+            ArrayContainer result = new ArrayContainer(cardinality);
+            forEach(0, value -> result.values[result.size++] = (char) value);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package iium.event.participation;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replaces data files atomically and forces them to disk according to a policy.
+ * A file is written under a temporary name, forced to disk and moved over the old one, so a
+ * crash or power failure while saving leaves the old file, and the file is always the old or
+ * the new one. Whether the move itself survives a power failure depends on when the directory
+ * holding the file is forced to disk, which costs a disk flush per call:
+ * <ul>
+ * <li>EVERY_OP forces the directory after every move, so a completed change is never lost.</li>
+ * <li>INTERVAL forces the directories of the files replaced since the last flush every
+ * iium.durability.intervalMs milliseconds (default 1000), losing at most that much after a
+ * power failure.</li>
+ * <li>BATCH forces them after every iium.durability.batchSize replacements (default 32).</li>
+ * </ul>
+ * The policy is set with -Diium.durability=every|interval|batch, default interval. With the
+ * last two, pending directories are also forced when the app exits normally.
+ */
+public final class Durability {
+    public enum Policy {
+        EVERY_OP, INTERVAL, BATCH
+    }
+
+    private static final long DEFAULT_INTERVAL_MS = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 32;
+    private static Durability instance;
+
+    private final Policy policy;
+    private final long intervalMs;
+    private final int batchSize;
+    private final Set<Path> pending = new LinkedHashSet<>(); // Directories with moves not yet forced to disk
+    private int pendingReplacements;
+    private Thread flusher;
+
+    Durability(Policy policy, long intervalMs, int batchSize) {
+        this.policy = policy;
+        this.intervalMs = Math.max(1, intervalMs);
+        this.batchSize = Math.max(1, batchSize);
+        if (policy != Policy.EVERY_OP) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "durability-flush"));
+        }
+    }
+
+    public static synchronized Durability getInstance() {
+        if (instance == null) {
+            instance = new Durability(configuredPolicy(), Long.getLong("iium.durability.intervalMs", DEFAULT_INTERVAL_MS),
+                Integer.getInteger("iium.durability.batchSize", DEFAULT_BATCH_SIZE));
+        }
+        return instance;
+    }
+
+    private static Policy configuredPolicy() {
+        String value = System.getProperty("iium.durability", "interval").trim().toLowerCase();
+        switch (value) {
+            case "every":
+            case "every_op":
+                return Policy.EVERY_OP;
+            case "batch":
+                return Policy.BATCH;
+            case "interval":
+                return Policy.INTERVAL;
+            default:
+                System.err.println("Unknown iium.durability policy " + value + ", using interval");
+                return Policy.INTERVAL;
+        }
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Gets the temporary file to write the new content of a file to, next to it so the
+     * move stays on one filesystem.
+     */
+    public static Path tempFileFor(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    /**
+     * Forces a completely written temporary file to disk, moves it over the target in one step
+     * and forces the move to disk now or later, depending on the policy.
+     * @param temp The new content, see {@link #tempFileFor(Path)}
+     * @param target The file to replace
+     */
+    public void replace(Path temp, Path target) throws IOException {
+        force(temp);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Path directory = target.toAbsolutePath().getParent();
+        if (policy == Policy.EVERY_OP) {
+            forceDirectory(directory);
+            return;
+        }
+        boolean flushNow;
+        synchronized (this) {
+            pending.add(directory);
+            pendingReplacements++;
+            flushNow = policy == Policy.BATCH && pendingReplacements >= batchSize;
+            if (policy == Policy.INTERVAL && flusher == null) {
+                flusher = new Thread(this::flushPeriodically, "durability-flusher");
+                flusher.setDaemon(true);
+                flusher.start();
+            }
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Forces the moves made since the last flush to disk.
+     */
+    public void flush() {
+        List<Path> directories;
+        synchronized (this) {
+            directories = new ArrayList<>(pending);
+            pending.clear();
+            pendingReplacements = 0;
+        }
+        for (Path directory : directories) {
+            forceDirectory(directory);
+        }
+    }
+
+    private void flushPeriodically() {
+        try {
+            while (true) {
+                Thread.sleep(intervalMs);
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces a directory's entries to disk, so a move into it survives a power failure.
+     * Not possible on Windows, where NTFS journals the move itself.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened on every platform
+        }
+    }
+}
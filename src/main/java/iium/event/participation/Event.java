@@ -1,20 +1,50 @@
 package iium.event.participation;
 
-import java.io.Serializable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.regex.Pattern;
 
-public class Event implements Serializable {
+public class Event implements Externalizable {
     private static final long serialVersionUID = 1L;
+    /** Version of the binary format written by {@link #writeExternal(ObjectOutput)}. */
+    private static final int BINARY_FORMAT = 1;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final Pattern DATE_TIME_FIELD = Pattern.compile("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}");
+    /** Returned by {@link #toEpochMinute(String)} for a missing or invalid time. */
+    public static final long NO_TIME = Long.MIN_VALUE;
+    /** How long an event without an end time is taken to last. */
+    public static final int DEFAULT_DURATION_MINUTES = 60;
     
     private String id;
     private String title;
     private String description;
-    private String date;
+    private String date; // Start, "yyyy-MM-dd HH:mm"
+    private String endDate; // Same format, null if not set
     private String location;
     private int capacity;
     private int registeredCount;
     private String organizerId;
-    private final List<String> participants;
+    // Participants are stored by the dense IDs from UserIdRegistry.
+    // The list is held strongly while it has changes that are not yet stored; once stored
+    // it is only softly reachable and is read again through the loader if the GC drops it.
+    private IntSet participants;
+    private transient SoftReference<IntSet> storedParticipants;
+    private transient ParticipantLoader participantLoader;
+    // Bumped on every change, so views can tell whether values they derived are still current
+    private transient volatile int version;
 
     public Event(String id, String title, String description, String date, String location, int capacity, String organizerId) {
         this.id = id;
@@ -25,7 +55,15 @@ public class Event implements Serializable {
         this.capacity = Math.max(1, capacity);
         this.organizerId = organizerId;
         this.registeredCount = 0;
-        this.participants = new ArrayList<>();
+        this.participants = new IntSet();
+    }
+
+    /**
+     * Creates an empty event to be filled by {@link #readExternal(ObjectInput)}.
+     * Only for deserialization; use the other constructor.
+     */
+    public Event() {
+        this.participants = new IntSet();
     }
 
     // Getters and setters
@@ -35,6 +73,7 @@ public class Event implements Serializable {
 
     public void setId(String id) {
         this.id = id;
+        version++;
     }
 
     public String getTitle() {
@@ -43,6 +82,7 @@ public class Event implements Serializable {
 
     public void setTitle(String title) {
         this.title = title;
+        version++;
     }
 
     public String getDescription() {
@@ -51,6 +91,7 @@ public class Event implements Serializable {
 
     public void setDescription(String description) {
         this.description = description;
+        version++;
     }
 
     public String getDate() {
@@ -59,6 +100,19 @@ public class Event implements Serializable {
 
     public void setDate(String date) {
         this.date = date;
+        version++;
+    }
+
+    /**
+     * Gets the end time, in the same format as the date, or null if the event has none.
+     */
+    public String getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(String endDate) {
+        this.endDate = endDate == null || endDate.trim().isEmpty() ? null : endDate.trim();
+        version++;
     }
 
     public int getCapacity() {
@@ -67,6 +121,7 @@ public class Event implements Serializable {
 
     public void setCapacity(int capacity) {
         this.capacity = Math.max(1, capacity);
+        version++;
     }
 
     public String getLocation() {
@@ -75,6 +130,7 @@ public class Event implements Serializable {
 
     public void setLocation(String location) {
         this.location = location;
+        version++;
     }
     
     public String getOrganizerId() {
@@ -83,6 +139,7 @@ public class Event implements Serializable {
     
     public void setOrganizerId(String organizerId) {
         this.organizerId = organizerId;
+        version++;
     }
     
     public int getAvailableSpaces() {
@@ -93,65 +150,462 @@ public class Event implements Serializable {
         return registeredCount;
     }
     
-    public boolean registerParticipant(String username) {
-        if (registeredCount >= capacity || participants.contains(username)) {
+    /**
+     * Gets a counter that changes whenever a field or the participant list changes.
+     */
+    public int getVersion() {
+        return version;
+    }
+    
+    public synchronized boolean registerParticipant(String username) {
+        int userId = UserIdRegistry.getInstance().idOf(username);
+        IntSet set = participantSet();
+        if (registeredCount >= capacity || set.contains(userId)) {
             return false;
         }
-        participants.add(username);
+        set.add(userId);
+        participants = set;
         registeredCount++;
+        version++;
         return true;
     }
     
-    public boolean unregisterParticipant(String username) {
-        boolean removed = participants.remove(username);
+    public synchronized boolean unregisterParticipant(String username) {
+        int userId = UserIdRegistry.getInstance().find(username);
+        IntSet set = participantSet();
+        boolean removed = userId >= 0 && set.remove(userId);
         if (removed) {
+            participants = set;
             registeredCount--;
+            version++;
         }
         return removed;
     }
     
+    public synchronized boolean isParticipant(String username) {
+        int userId = UserIdRegistry.getInstance().find(username);
+        return userId >= 0 && participantSet().contains(userId);
+    }
+    
+    /**
+     * Gets a copy of the participant IDs, see {@link UserIdRegistry}.
+     */
+    public synchronized IntSet getParticipantIds() {
+        return participantSet().copy();
+    }
+    
     public List<String> getParticipants() {
-        return new ArrayList<>(participants);
+        IntSet set = getParticipantIds();
+        UserIdRegistry registry = UserIdRegistry.getInstance();
+        List<String> usernames = new ArrayList<>(set.size());
+        set.forEach(userId -> usernames.add(registry.usernameOf(userId)));
+        return usernames;
+    }
+    
+    /**
+     * Creates a detached copy of the editable details, without participants.
+     * Used by edit dialogs, so the event itself only changes once the edit is accepted.
+     */
+    public Event copyDetails() {
+        Event copy = new Event(id, title, description, date, location, capacity, organizerId);
+        copy.endDate = endDate;
+        return copy;
+    }
+    
+    /**
+     * Copies the editable details (title, description, date, end date, location, capacity) of another event.
+     */
+    public void copyDetailsFrom(Event other) {
+        setTitle(other.title);
+        setDescription(other.description);
+        setDate(other.date);
+        setEndDate(other.endDate);
+        setLocation(other.location);
+        setCapacity(other.capacity);
+    }
+    
+    /**
+     * Applies a registration change that another app instance has already stored, see {@link ChangeLog}.
+     * A participant list in memory is updated; one that is not is read from storage when needed.
+     * @param username The user who registered or unregistered
+     * @param registered Whether the user registered
+     * @param storedCount The registered count after the change
+     */
+    public synchronized void applyStoredRegistration(String username, boolean registered, int storedCount) {
+        IntSet set = participants != null ? participants : storedParticipants != null ? storedParticipants.get() : null;
+        if (set != null) {
+            if (registered) {
+                set.add(UserIdRegistry.getInstance().idOf(username));
+            } else {
+                int userId = UserIdRegistry.getInstance().find(username);
+                if (userId >= 0) {
+                    set.remove(userId);
+                }
+            }
+        }
+        registeredCount = storedCount;
+        version++;
+    }
+    
+    // --- Lazy participant list ---
+    
+    /**
+     * Sets where the participant list is read from when it is not in memory.
+     * Called by repositories for the events they load or store.
+     */
+    public synchronized void setParticipantLoader(ParticipantLoader participantLoader) {
+        this.participantLoader = participantLoader;
+    }
+    
+    /**
+     * Checks whether the participant list may have changes that storage does not have yet.
+     * This is the case after a registration change and for events never stored.
+     */
+    public synchronized boolean hasUnsavedParticipants() {
+        return participants != null;
+    }
+    
+    /**
+     * Checks whether the participant list is in memory, i.e. can be used without reading storage.
+     */
+    public synchronized boolean isParticipantListLoaded() {
+        return participants != null || (storedParticipants != null && storedParticipants.get() != null);
+    }
+    
+    /**
+     * Tells the event that storage now holds its participant list, so the in-memory copy
+     * may be dropped under memory pressure and read again through the loader.
+     */
+    public synchronized void markParticipantsStored() {
+        if (participantLoader != null && participants != null) {
+            storedParticipants = new SoftReference<>(participants);
+            participants = null;
+        }
+    }
+    
+    private IntSet participantSet() {
+        if (participants != null) {
+            return participants;
+        }
+        IntSet stored = storedParticipants != null ? storedParticipants.get() : null;
+        if (stored != null) {
+            return stored;
+        }
+        if (participantLoader == null) {
+            participants = new IntSet();
+            return participants;
+        }
+        try {
+            stored = participantLoader.load(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading participants of event " + id, e);
+        }
+        storedParticipants = new SoftReference<>(stored);
+        return stored;
+    }
+    
+    // --- Times ---
+    
+    /**
+     * Parses a "yyyy-MM-dd HH:mm" time.
+     * @return Minutes since the epoch, or {@link #NO_TIME} if the text is null or not such a time
+     */
+    public static long toEpochMinute(String dateTime) {
+        if (dateTime == null) {
+            return NO_TIME;
+        }
+        try {
+            return toEpochMinute(LocalDateTime.parse(dateTime.trim(), DATE_TIME));
+        } catch (DateTimeParseException e) {
+            return NO_TIME;
+        }
+    }
+    
+    /**
+     * Converts a local time to the minutes used by {@link #toEpochMinute(String)}.
+     */
+    public static long toEpochMinute(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+    
+    /**
+     * Gets when the event ends: its end date or, without a valid one, an hour after the start.
+     * @return Minutes since the epoch, or {@link #NO_TIME} if the event has no valid start
+     */
+    public long getEndMinute() {
+        long start = toEpochMinute(date);
+        if (start == NO_TIME) {
+            return NO_TIME;
+        }
+        long end = toEpochMinute(endDate);
+        return end == NO_TIME || end <= start ? start + DEFAULT_DURATION_MINUTES : end;
+    }
+    
+    // --- File format ---
+    
+    /**
+     * Formats the event fields without the participant list.
+     * The end date is the ninth field and empty if not set. Text fields are quoted where
+     * needed, see {@link RecordTokenizer}.
+     */
+    public String toMetadataString() {
+        return new StringBuilder(128)
+            .append(RecordTokenizer.quote(id)).append(',')
+            .append(RecordTokenizer.quote(title)).append(',')
+            .append(RecordTokenizer.quote(description)).append(',')
+            .append(RecordTokenizer.quote(date)).append(',')
+            .append(RecordTokenizer.quote(location)).append(',')
+            .append(capacity).append(',')
+            .append(registeredCount).append(',')
+            .append(RecordTokenizer.quote(organizerId)).append(',')
+            .append(endDate == null ? "" : RecordTokenizer.quote(endDate))
+            .toString();
+    }
+    
+    /**
+     * Checks whether the ninth field of a stored line is the end date. Lines written before
+     * events had end dates have the first participant there instead, and usernames never
+     * look like a time or are empty.
+     */
+    static boolean isEndDateField(String field) {
+        return field.isEmpty() || DATE_TIME_FIELD.matcher(field).matches();
+    }
+    
+    /**
+     * Formats the participant list as comma-separated usernames.
+     */
+    public String toParticipantsString() {
+        return toParticipantsString(getParticipantIds());
+    }
+    
+    /**
+     * Formats participant IDs, e.g. a copy taken earlier, as comma-separated usernames.
+     */
+    public static String toParticipantsString(IntSet participantIds) {
+        StringBuilder line = new StringBuilder();
+        UserIdRegistry registry = UserIdRegistry.getInstance();
+        participantIds.forEach(userId -> {
+            if (line.length() > 0) {
+                line.append(',');
+            }
+            line.append(RecordTokenizer.quote(registry.usernameOf(userId)));
+        });
+        return line.toString();
     }
     
     public String toFileString() {
-        return String.format("%s,%s,%s,%s,%s,%d,%d,%s", 
-            id, title, description, date, location, capacity, registeredCount, organizerId);
+        String participantsString = toParticipantsString();
+        return participantsString.isEmpty() ? toMetadataString() : toMetadataString() + "," + participantsString;
     }
     
-    public static Event fromFileString(String line) {
-        String[] parts = line.split(",", -1);
-        if (parts.length < 8) return null;
+    /**
+     * Parses a participant list written by {@link #toParticipantsString()}.
+     */
+    public static IntSet parseParticipants(String line) {
+        return parseParticipants(RecordTokenizer.of(line));
+    }
+    
+    /**
+     * Parses the remaining fields of a tokenizer as a participant list.
+     */
+    public static IntSet parseParticipants(RecordTokenizer fields) {
+        IntSet set = new IntSet();
+        addParticipants(set, fields);
+        return set;
+    }
+    
+    private static void addParticipants(IntSet set, RecordTokenizer fields) {
+        UserIdRegistry registry = UserIdRegistry.getInstance();
+        while (fields.hasNext()) {
+            String username = fields.next();
+            if (!username.isEmpty()) {
+                set.add(registry.idOf(username));
+            }
+        }
+    }
+    
+    // --- Binary format ---
+    
+    /**
+     * Writes the event for Java serialization: a format version byte, then the fields as
+     * variable-length ints and length-prefixed UTF-8, then the participants as usernames in
+     * sorted order, each written as the length of the prefix it shares with the previous one
+     * and the rest. User IDs are not written, since they differ between processes.
+     */
+    @Override
+    public synchronized void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(BINARY_FORMAT);
+        writeString(out, id);
+        writeString(out, title);
+        writeString(out, description);
+        writeString(out, date);
+        writeString(out, endDate);
+        writeString(out, location);
+        writeString(out, organizerId);
+        writeVarInt(out, capacity);
+        writeVarInt(out, registeredCount);
+        
+        UserIdRegistry registry = UserIdRegistry.getInstance();
+        IntSet set = participantSet();
+        String[] usernames = new String[set.size()];
+        int[] next = {0};
+        set.forEach(userId -> usernames[next[0]++] = registry.usernameOf(userId));
+        Arrays.sort(usernames);
+        writeVarInt(out, usernames.length);
+        byte[] previous = new byte[0];
+        for (String username : usernames) {
+            byte[] bytes = username.getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            while (shared < previous.length && shared < bytes.length && previous[shared] == bytes[shared]) {
+                shared++;
+            }
+            writeVarInt(out, shared);
+            writeVarInt(out, bytes.length - shared);
+            out.write(bytes, shared, bytes.length - shared);
+            previous = bytes;
+        }
+    }
+    
+    /**
+     * Reads an event written by {@link #writeExternal(ObjectOutput)}.
+     * @throws InvalidObjectException If it was written in a newer format
+     */
+    @Override
+    public synchronized void readExternal(ObjectInput in) throws IOException {
+        int format = in.readUnsignedByte();
+        if (format > BINARY_FORMAT) {
+            throw new InvalidObjectException("Unsupported event format version " + format);
+        }
+        StringDictionary dictionary = StringDictionary.getInstance();
+        id = readString(in);
+        title = readString(in);
+        description = readString(in);
+        date = readString(in);
+        endDate = readString(in);
+        location = dictionary.encode(readString(in));
+        organizerId = dictionary.encode(readString(in));
+        capacity = readVarInt(in);
+        registeredCount = readVarInt(in);
         
+        UserIdRegistry registry = UserIdRegistry.getInstance();
+        int count = readVarInt(in);
+        IntSet set = new IntSet();
+        byte[] previous = new byte[0];
+        for (int i = 0; i < count; i++) {
+            int shared = readVarInt(in);
+            int rest = readVarInt(in);
+            if (shared > previous.length) {
+                throw new InvalidObjectException("Invalid participant list of event " + id);
+            }
+            byte[] bytes = Arrays.copyOf(previous, shared + rest);
+            in.readFully(bytes, shared, rest);
+            set.add(registry.idOf(new String(bytes, StandardCharsets.UTF_8)));
+            previous = bytes;
+        }
+        participants = set;
+        storedParticipants = null;
+        participantLoader = null;
+        version++;
+    }
+    
+    /**
+     * Writes a string as its UTF-8 length plus one, or 0 for null, followed by the bytes.
+     */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Writes a non-negative int in 7-bit groups, low group first, so small values take one byte.
+     */
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidObjectException("Invalid number in event data");
+    }
+    
+    public static Event fromFileString(String line) {
+        return fromRecord(RecordTokenizer.of(line));
+    }
+    
+    /**
+     * Parses the fields of a line written by {@link #toFileString()} or {@link #toMetadataString()}.
+     * @return The event, or null if the line has too few fields or an invalid number
+     */
+    public static Event fromRecord(RecordTokenizer fields) {
         try {
-            String id = parts[0];
-            String title = parts[1];
-            String description = parts[2];
-            String date = parts[3];
-            String location = parts[4];
-            int capacity = Integer.parseInt(parts[5]);
-            int registeredCount = Integer.parseInt(parts[6]);
-            String organizerId = parts[7];
+            StringDictionary dictionary = StringDictionary.getInstance();
+            String id = fields.next();
+            String title = fields.next();
+            String description = fields.next();
+            String date = fields.next();
+            String location = dictionary.encode(fields.next());
+            int capacity = fields.nextInt();
+            int registeredCount = fields.nextInt();
+            String organizerId = dictionary.encode(fields.next());
             
             Event event = new Event(id, title, description, date, location, capacity, organizerId);
             event.registeredCount = registeredCount;
+            event.participants = null; // Created below or on first use, or read through a loader
+            String firstParticipant = null;
+            if (fields.hasNext()) {
+                String field = fields.next();
+                if (isEndDateField(field)) {
+                    event.endDate = field.isEmpty() ? null : field;
+                } else {
+                    firstParticipant = field;
+                }
+            }
             
             // Add participants if any
-            for (int i = 8; i < parts.length; i++) {
-                if (!parts[i].isEmpty()) {
-                    event.participants.add(parts[i]);
+            if (firstParticipant != null || fields.hasNext()) {
+                IntSet set = new IntSet();
+                if (firstParticipant != null) {
+                    set.add(UserIdRegistry.getInstance().idOf(firstParticipant));
                 }
+                addParticipants(set, fields);
+                event.participants = set;
             }
             
             return event;
-        } catch (NumberFormatException e) {
+        } catch (NumberFormatException | IllegalStateException e) {
             return null;
         }
     }
 
     @Override
     public String toString() {
-        return String.format("ID: %s\nTitle: %s\nDate: %s\nCapacity: %d\nOrganizer: %s\nDescription: %s",
-            id, title, date, capacity, organizerId, description);
+        return String.format("ID: %s\nTitle: %s\nDate: %s%s\nCapacity: %d\nOrganizer: %s\nDescription: %s",
+            id, title, date, endDate == null ? "" : " to " + endDate, capacity, organizerId, description);
     }
 }
@@ -1,6 +1,7 @@
 package iium.event.participation;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
@@ -75,6 +76,18 @@ public class EventAppFX extends Application {
         grid.add(statusLabel, 1, 5);
         GridPane.setHalignment(statusLabel, HPos.RIGHT);
 
+        // Users may still be loading in the background; allow login once they are ready
+        if (!userManager.isLoaded()) {
+            loginBtn.setDisable(true);
+            registerBtn.setDisable(true);
+            statusLabel.setText("Loading users...");
+            userManager.whenLoaded().whenComplete((result, error) -> Platform.runLater(() -> {
+                loginBtn.setDisable(false);
+                registerBtn.setDisable(false);
+                statusLabel.setText(error == null ? "" : "Failed to load users: " + error.getMessage());
+            }));
+        }
+
         // Event handlers
         loginBtn.setOnAction(e -> {
             String username = userTextField.getText();
@@ -218,19 +231,11 @@ public class EventAppFX extends Application {
                 pwBox.clear();
                 phoneField.clear();
                 // Auto switch to login after 2 seconds
-                new java.util.Timer().schedule(
-                    new java.util.TimerTask() {
-                        @Override
-                        public void run() {
-                            javafx.application.Platform.runLater(() -> {
-                                root.getChildren().remove(registrationForm);
-                                root.getChildren().add(loginForm);
-                                statusLabel.setText("");
-                            });
-                        }
-                    },
-                    2000
-                );
+                TimerWheel.getInstance().schedule(2000, () -> Platform.runLater(() -> {
+                    root.getChildren().remove(registrationForm);
+                    root.getChildren().add(loginForm);
+                    statusLabel.setText("");
+                }));
             } else {
                 statusLabel.setText("Registration failed. Username may be taken.");
             }
@@ -0,0 +1,77 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed, append-only file of events that have ended, moved out of the live events by
+ * EventManager so loading and saving only pay for current ones.
+ * Each archiving run appends one gzip member holding the events' full lines, participants
+ * included; gzip readers read concatenated members as one stream. The file is only read when
+ * history is asked for.
+ */
+public class EventArchive {
+    private final Path path;
+
+    public EventArchive(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Appends events and forces them to disk, so they can be removed from the live events.
+     * @param events The events, with their participant lists
+     */
+    public synchronized void append(List<Event> events) throws IOException {
+        // Compressed in memory first, so a failure cannot leave half a member in the file
+        ByteArrayOutputStream member = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(member), StandardCharsets.UTF_8)) {
+            for (Event event : events) {
+                writer.write(event.toFileString());
+                writer.write('\n');
+            }
+        }
+        try (FileOutputStream out = new FileOutputStream(path.toFile(), true)) {
+            member.writeTo(out);
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Reads all archived events, in the order they were archived. If an event was archived
+     * twice, e.g. after a crash between archiving and removing it, the last copy is kept.
+     * @return The events with their participants, empty if nothing has been archived
+     */
+    public synchronized List<Event> readAll() {
+        Map<String, Event> events = new LinkedHashMap<>();
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Event event = Event.fromFileString(line);
+                if (event != null) {
+                    events.remove(event.getId());
+                    events.put(event.getId(), event);
+                }
+            }
+        } catch (IOException e) {
+            // Keeps what was read before the damaged part
+            System.err.println("Error reading event archive: " + e.getMessage());
+        }
+        return new ArrayList<>(events.values());
+    }
+}
@@ -0,0 +1,114 @@
+package iium.event.participation;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableRow;
+import javafx.util.Callback;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Typed table column values for events, used instead of PropertyValueFactory.
+ * Values are read through a getter reference rather than a reflective lookup, and each event's
+ * value and display text are kept until {@link Event#getVersion()} changes, so scrolling
+ * over unchanged rows does not call the getter or format anything again. Values that also
+ * depend on something outside the event pass a counter for it, see
+ * {@link #text(String, Function, IntSupplier)}.
+ * Must only be used on the JavaFX application thread.
+ */
+public class EventColumn<T> implements Callback<TableColumn.CellDataFeatures<Event, T>, ObservableValue<T>> {
+    private final Function<Event, T> getter;
+    private final Function<T, String> formatter;
+    private final IntSupplier dependency;
+    private final Map<Event, CachedValue<T>> cache = new WeakHashMap<>();
+
+    /**
+     * The value of one event, reused for as long as the event has the same version.
+     */
+    private static final class CachedValue<T> {
+        final ReadOnlyObjectWrapper<T> value = new ReadOnlyObjectWrapper<>();
+        int version = -1;
+        int dependencyVersion;
+        String text;
+    }
+
+    private EventColumn(Function<Event, T> getter, Function<T, String> formatter, IntSupplier dependency) {
+        this.getter = getter;
+        this.formatter = formatter;
+        this.dependency = dependency;
+    }
+
+    /**
+     * Creates a column showing a text field of the event.
+     */
+    public static TableColumn<Event, String> text(String title, Function<Event, String> getter) {
+        return create(title, getter, Function.identity(), () -> 0);
+    }
+
+    /**
+     * Creates a text column whose values also depend on something besides the event, such as
+     * the current user's registrations. Values are computed again when the dependency's
+     * counter changes.
+     */
+    public static TableColumn<Event, String> text(String title, Function<Event, String> getter, IntSupplier dependency) {
+        return create(title, getter, Function.identity(), dependency);
+    }
+
+    /**
+     * Creates a column showing a number field of the event. It sorts numerically.
+     */
+    public static TableColumn<Event, Integer> number(String title, Function<Event, Integer> getter) {
+        return create(title, getter, String::valueOf, () -> 0);
+    }
+
+    private static <T> TableColumn<Event, T> create(String title, Function<Event, T> getter, Function<T, String> formatter,
+            IntSupplier dependency) {
+        EventColumn<T> values = new EventColumn<>(getter, formatter, dependency);
+        TableColumn<Event, T> column = new TableColumn<>(title);
+        column.setCellValueFactory(values);
+        column.setCellFactory(c -> values.new Cell());
+        return column;
+    }
+
+    @Override
+    public ObservableValue<T> call(TableColumn.CellDataFeatures<Event, T> features) {
+        return cachedValue(features.getValue()).value.getReadOnlyProperty();
+    }
+
+    private CachedValue<T> cachedValue(Event event) {
+        CachedValue<T> cached = cache.computeIfAbsent(event, e -> new CachedValue<>());
+        int version = event.getVersion();
+        int dependencyVersion = dependency.getAsInt();
+        if (cached.version != version || cached.dependencyVersion != dependencyVersion) {
+            T value = getter.apply(event);
+            // Text first: setting the value notifies the cells, which read the text
+            cached.version = version;
+            cached.dependencyVersion = dependencyVersion;
+            cached.text = value == null ? "" : formatter.apply(value);
+            cached.value.set(value);
+        }
+        return cached;
+    }
+
+    /**
+     * Shows the cached text of its row's event instead of formatting the item again.
+     */
+    private final class Cell extends TableCell<Event, T> {
+        @Override
+        protected void updateItem(T item, boolean empty) {
+            super.updateItem(item, empty);
+            TableRow<Event> row = getTableRow();
+            Event event = empty || row == null ? null : row.getItem();
+            if (event == null) {
+                setText(empty || item == null ? null : formatter.apply(item));
+            } else {
+                setText(cachedValue(event).text);
+            }
+            setGraphic(null);
+        }
+    }
+}
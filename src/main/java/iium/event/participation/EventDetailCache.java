@@ -0,0 +1,74 @@
+package iium.event.participation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Formatted detail text of recently shown events, shared by the dashboard views.
+ * An entry is only used for the same event object at the version it was formatted for, see
+ * {@link Event#getVersion()}, so edits and registrations show at once. EventManager drops the
+ * entries of events it deletes, archives or replaces, so the cache does not keep them alive.
+ * Holds the {@link #MAX_ENTRIES} most recently used entries.
+ */
+public final class EventDetailCache {
+    static final int MAX_ENTRIES = 1024;
+    private static EventDetailCache instance;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static final class Entry {
+        private final Event event;
+        private final int version;
+        private final String text;
+
+        private Entry(Event event, int version, String text) {
+            this.event = event;
+            this.version = version;
+            this.text = text;
+        }
+    }
+
+    private EventDetailCache() {
+    }
+
+    public static synchronized EventDetailCache getInstance() {
+        if (instance == null) {
+            instance = new EventDetailCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the detail text of an event, formatting it only if it changed since last time.
+     */
+    public synchronized String get(Event event) {
+        int version = event.getVersion();
+        Entry entry = entries.get(event.getId());
+        if (entry != null && entry.event == event && entry.version == version) {
+            return entry.text;
+        }
+        String text = format(event);
+        entries.put(event.getId(), new Entry(event, version, text));
+        return text;
+    }
+
+    public synchronized void invalidate(String eventId) {
+        entries.remove(eventId);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static String format(Event event) {
+        return "Description: " + event.getDescription() + "\n\n" +
+            "Ends: " + (event.getEndDate() != null ? event.getEndDate() : "not set") + "\n" +
+            "Capacity: " + event.getAvailableSpaces() + "/" + event.getCapacity() + " participants\n" +
+            "Organizer: " + event.getOrganizerId();
+    }
+}
@@ -0,0 +1,504 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A text file of events, one per line, whose participant lists are read on demand.
+ * Reading parses only the event fields and remembers where each participant list starts and
+ * ends in the file. Writing copies the stored bytes of lists that were never loaded, so a
+ * rewrite does not have to load every participant list either.
+ * Files are written with the {@link RecordTokenizer#HEADER} line; files without it predate
+ * quoted fields and are read without quote handling until they are rewritten.
+ */
+public class EventFile {
+    private static final int METADATA_FIELDS = 8; // Fields before the optional end date, see Event#toMetadataString()
+    private static final int END_DATE_LENGTH = "yyyy-MM-dd HH:mm".length();
+    private static final long PARALLEL_CHUNK_BYTES = 1 << 20; // Smaller files or parts are parsed on one thread
+
+    private final Path path;
+    private final Map<String, long[]> participantRanges = new HashMap<>(); // event ID -> {offset, length}
+    private final ReadWriteLock rangeLock = new ReentrantReadWriteLock();
+    private boolean quoted = true; // Whether the file has the header, see RecordTokenizer; guarded by rangeLock
+    private volatile String fileState = ""; // See fileState()
+
+    public EventFile(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Reads the event fields of every line. Participant lists are left in the file.
+     * @return The events in file order, empty if the file does not exist
+     */
+    public synchronized List<Event> read() throws IOException {
+        List<Event> events = new ArrayList<>();
+        rangeLock.writeLock().lock();
+        try {
+            participantRanges.clear();
+            fileState = fileState();
+            if (!Files.exists(path)) {
+                return events;
+            }
+            List<Chunk> chunks;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long start = headerEnd(channel);
+                quoted = start > 0;
+                if (size - start <= PARALLEL_CHUNK_BYTES) {
+                    chunks = List.of(parseChunk(channel, start, size, quoted));
+                } else {
+                    chunks = ForkJoinPool.commonPool().invoke(new ParseTask(channel, start, size, quoted));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            // Merged in file order, so the result is the same as reading line by line
+            ParticipantLoader loader = this::loadParticipants;
+            for (Chunk chunk : chunks) {
+                for (int i = 0; i < chunk.events.size(); i++) {
+                    Event event = chunk.events.get(i);
+                    addRange(event.getId(), chunk.ranges.get(i));
+                    event.setParticipantLoader(loader);
+                    events.add(event);
+                }
+            }
+        } finally {
+            rangeLock.writeLock().unlock();
+        }
+        return events;
+    }
+
+    /**
+     * The events parsed from one part of the file, with their participant list ranges.
+     */
+    private static final class Chunk {
+        final List<Event> events = new ArrayList<>();
+        final List<long[]> ranges = new ArrayList<>();
+    }
+
+    private static Chunk parseChunk(FileChannel channel, long from, long to, boolean quoted) throws IOException {
+        Chunk chunk = new Chunk();
+        scan(channel, from, to, quoted, (metadata, range) -> {
+            Event event = Event.fromRecord(metadata);
+            if (event != null) {
+                chunk.events.add(event);
+                chunk.ranges.add(range);
+            }
+        });
+        return chunk;
+    }
+
+    /**
+     * Parses a part of the file by splitting it at a line start near the middle until the
+     * parts are small, so large files are parsed on all cores. The chunks come back in file order.
+     */
+    private static final class ParseTask extends RecursiveTask<List<Chunk>> {
+        private static final long serialVersionUID = 1L;
+        private final FileChannel channel;
+        private final long from;
+        private final long to;
+        private final boolean quoted;
+
+        ParseTask(FileChannel channel, long from, long to, boolean quoted) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.quoted = quoted;
+        }
+
+        @Override
+        protected List<Chunk> compute() {
+            try {
+                long middle = to - from > PARALLEL_CHUNK_BYTES ? nextLineStart(channel, from + (to - from) / 2, to) : to;
+                if (middle >= to) {
+                    return List.of(parseChunk(channel, from, to, quoted));
+                }
+                ParseTask first = new ParseTask(channel, from, middle, quoted);
+                first.fork();
+                List<Chunk> second = new ParseTask(channel, middle, to, quoted).compute();
+                List<Chunk> chunks = new ArrayList<>(first.join());
+                chunks.addAll(second);
+                return chunks;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Finds where the events start: after the {@link RecordTokenizer#HEADER} line if the file
+     * has one.
+     * @return The position after the header line, or 0 for a file written before quoting
+     */
+    private static long headerEnd(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RecordTokenizer.HEADER.length() + 2);
+        int read = channel.read(buffer, 0);
+        byte[] bytes = buffer.array();
+        int lineEnd = 0;
+        while (lineEnd < read && bytes[lineEnd] != '\n') {
+            lineEnd++;
+        }
+        int headerEnd = lineEnd > 0 && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+        if (!RecordTokenizer.isHeader(bytes, 0, headerEnd)) {
+            return 0;
+        }
+        return lineEnd < read ? lineEnd + 1 : read;
+    }
+
+    /**
+     * Finds the start of the first line that begins at or after a position.
+     * @return The position after the first line break before the limit, or the limit
+     */
+    private static long nextLineStart(FileChannel channel, long position, long limit) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long at = position - 1; // A line starts at the position if the byte before it is a line break
+        while (at < limit) {
+            buffer.clear();
+            int read = channel.read(buffer, at);
+            if (read <= 0) {
+                return limit;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return Math.min(at + i + 1, limit);
+                }
+            }
+            at += read;
+        }
+        return limit;
+    }
+
+    /**
+     * Calls the handler with the event fields and participant list range of every line.
+     * The same tokenizer is reused for every line, so the handler must not keep it.
+     * Records the state of the file, see {@link #rescanIfReplaced()}.
+     */
+    private void scan(BiConsumer<RecordTokenizer, long[]> handler) throws IOException {
+        fileState = fileState();
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long start = headerEnd(channel);
+            quoted = start > 0;
+            scan(channel, start, channel.size(), quoted, handler);
+        }
+    }
+
+    /**
+     * Scans the lines in a part of the file, which must start at the beginning of a line and
+     * end after a line break or at the end of the file. Positions in the ranges are absolute.
+     * Reads through positional reads only, so several parts can be scanned at once.
+     * @param quoted Whether the file has the header, so fields starting with a quote are quoted
+     */
+    private static void scan(FileChannel channel, long from, long to, boolean quoted,
+                             BiConsumer<RecordTokenizer, long[]> handler) throws IOException {
+        // Read in chunks and walked here, a read() call per byte costs more than the parsing
+        byte[] chunk = new byte[1 << 16];
+        int chunkLength = 0;
+        int chunkIndex = 0;
+        long readPosition = from;
+        LineBuffer metadata = new LineBuffer();
+        LineBuffer endDate = new LineBuffer();
+        RecordTokenizer fields = new RecordTokenizer();
+        fields.setQuoting(quoted);
+        long position = from;
+        long participantsStart = -1;
+        long endDateStart = -1; // Start of the field after the event fields, while it is being read
+        long lineEnd = 0;
+        int commas = 0;
+        // Commas inside quoted fields do not separate fields, see RecordTokenizer
+        boolean fieldStart = true;
+        boolean inQuotes = false;
+        boolean quoteClosed = false;
+        int b;
+        while (true) {
+            if (chunkIndex == chunkLength && chunkLength >= 0) {
+                int length = (int) Math.min(chunk.length, to - readPosition);
+                chunkLength = length <= 0 ? -1 : channel.read(ByteBuffer.wrap(chunk, 0, length), readPosition);
+                readPosition += Math.max(chunkLength, 0);
+                chunkIndex = 0;
+            }
+            b = chunkLength < 0 ? -1 : chunk[chunkIndex++] & 0xff;
+            if (endDateStart >= 0 && (b == ',' || b == '\n' || b == -1 || endDate.size() > END_DATE_LENGTH)) {
+                // Older lines have the first participant where newer ones have the end date
+                String field = endDate.toString();
+                if (Event.isEndDateField(field)) {
+                    metadata.write(',');
+                    metadata.write(endDate);
+                    if (b == ',') {
+                        participantsStart = position + 1;
+                    }
+                } else {
+                    participantsStart = endDateStart;
+                }
+                endDateStart = -1;
+                endDate.reset();
+                if (b == ',') {
+                    position++;
+                    continue;
+                }
+            }
+            if (b == '\n' || b == -1) {
+                if (metadata.size() > 0 || participantsStart >= 0) {
+                    fields.reset(metadata.bytes(), 0, metadata.size());
+                    handler.accept(fields,
+                        new long[] {participantsStart, participantsStart < 0 ? 0 : lineEnd - participantsStart});
+                }
+                if (b == -1) {
+                    break;
+                }
+                metadata.reset();
+                participantsStart = -1;
+                commas = 0;
+                fieldStart = true;
+                inQuotes = false;
+                quoteClosed = false;
+            } else if (endDateStart >= 0) {
+                if (b != '\r') {
+                    endDate.write(b);
+                }
+            } else if (participantsStart < 0) {
+                if (quoted && b == '"' && (fieldStart || inQuotes || quoteClosed)) {
+                    // Opens or closes a quoted field; a doubled quote closes and reopens it
+                    quoteClosed = inQuotes;
+                    inQuotes = !inQuotes;
+                } else {
+                    quoteClosed = false;
+                }
+                fieldStart = b == ',' && !inQuotes;
+                if (fieldStart && ++commas == METADATA_FIELDS) {
+                    endDateStart = position + 1;
+                } else if (b != '\r') {
+                    metadata.write(b);
+                }
+            }
+            position++;
+            if (b != '\r') {
+                lineEnd = position;
+            }
+        }
+    }
+
+    private void addRange(String eventId, long[] range) {
+        if (range[0] >= 0 && range[1] > 0) {
+            participantRanges.put(eventId, range);
+        }
+    }
+
+    /**
+     * Re-reads the participant list ranges if another process has replaced the file since it
+     * was last read or written here, see {@link ChangeLog}. Must hold the write lock.
+     */
+    private void rescanIfReplaced() throws IOException {
+        if (fileState().equals(fileState)) {
+            return;
+        }
+        participantRanges.clear();
+        scan((metadata, range) -> addRange(metadata.next(), range));
+    }
+
+    /**
+     * Identifies the current version of the file. Writes replace the file, which changes its
+     * file key, modification time or size.
+     */
+    private String fileState() throws IOException {
+        if (!Files.exists(path)) {
+            return "";
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return attributes.fileKey() + "/" + attributes.lastModifiedTime().toMillis() + "/" + attributes.size();
+    }
+
+    /**
+     * Reads the stored participant list of one event.
+     * Only takes the read lock, so it can be called while an event is locked without
+     * blocking on a writer that is serializing other events.
+     */
+    public IntSet loadParticipants(String eventId) throws IOException {
+        while (true) {
+            if (!fileState().equals(fileState)) {
+                rangeLock.writeLock().lock();
+                try {
+                    rescanIfReplaced();
+                } finally {
+                    rangeLock.writeLock().unlock();
+                }
+            }
+            IntSet participants;
+            rangeLock.readLock().lock();
+            try {
+                long[] range = participantRanges.get(eventId);
+                if (range == null) {
+                    participants = new IntSet();
+                } else {
+                    try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+                        byte[] bytes = readBytes(file, range);
+                        RecordTokenizer fields = new RecordTokenizer(bytes, 0, bytes.length);
+                        fields.setQuoting(quoted);
+                        participants = Event.parseParticipants(fields);
+                    }
+                }
+            } finally {
+                rangeLock.readLock().unlock();
+            }
+            // Another process may have replaced the file while it was being read
+            if (fileState().equals(fileState)) {
+                return participants;
+            }
+        }
+    }
+
+    /**
+     * Replaces the file with the given events. The new content is written to a temporary file
+     * and moved over the old one, so readers never see a half-written file and a crash leaves
+     * the old one, see {@link Durability}.
+     */
+    public synchronized void write(Collection<Event> events) throws IOException {
+        // A snapshot of the old file's ranges: loadParticipants may rescan the map meanwhile
+        Map<String, long[]> oldRanges;
+        boolean oldQuoted;
+        RandomAccessFile old;
+        rangeLock.writeLock().lock();
+        try {
+            rescanIfReplaced();
+            oldRanges = new HashMap<>(participantRanges);
+            oldQuoted = quoted;
+            old = Files.exists(path) ? new RandomAccessFile(path.toFile(), "r") : null;
+        } finally {
+            rangeLock.writeLock().unlock();
+        }
+        Path temp = Durability.tempFileFor(path);
+        Map<String, long[]> newRanges = new HashMap<>();
+        byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+            byte[] header = RecordTokenizer.HEADER.getBytes(StandardCharsets.UTF_8);
+            out.write(header);
+            out.write(lineSeparator);
+            long position = header.length + lineSeparator.length;
+            for (Event event : events) {
+                byte[] metadata = event.toMetadataString().getBytes(StandardCharsets.UTF_8);
+                out.write(metadata);
+                position += metadata.length;
+
+                // Lists that were never loaded are copied from the old file as they are
+                long[] range = oldRanges.get(event.getId());
+                byte[] participants;
+                if (range != null && old != null && !event.isParticipantListLoaded() && !event.hasUnsavedParticipants()) {
+                    participants = readBytes(old, range);
+                    if (!oldQuoted && contains(participants, '"')) {
+                        // Written before quoting, where a leading quote was part of the username
+                        RecordTokenizer fields = new RecordTokenizer(participants, 0, participants.length);
+                        fields.setQuoting(false);
+                        participants = Event.toParticipantsString(Event.parseParticipants(fields)).getBytes(StandardCharsets.UTF_8);
+                    }
+                } else {
+                    participants = event.toParticipantsString().getBytes(StandardCharsets.UTF_8);
+                }
+                if (participants.length > 0) {
+                    out.write(',');
+                    position++;
+                    newRanges.put(event.getId(), new long[] {position, participants.length});
+                    out.write(participants);
+                    position += participants.length;
+                }
+                out.write(lineSeparator);
+                position += lineSeparator.length;
+            }
+        } finally {
+            if (old != null) {
+                old.close();
+            }
+        }
+        rangeLock.writeLock().lock();
+        try {
+            Durability.getInstance().replace(temp, path);
+            quoted = true;
+            participantRanges.clear();
+            participantRanges.putAll(newRanges);
+            fileState = fileState();
+        } finally {
+            rangeLock.writeLock().unlock();
+        }
+        for (Event event : events) {
+            event.setParticipantLoader(this::loadParticipants);
+            event.markParticipantsStored();
+        }
+    }
+
+    /**
+     * Collects the event fields of a line and gives access to its buffer, so they can be
+     * tokenized without a copy. Unlike ByteArrayOutputStream, writes are not synchronized.
+     */
+    private static final class LineBuffer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        void write(LineBuffer other) {
+            for (int i = 0; i < other.size; i++) {
+                write(other.bytes[i]);
+            }
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, size, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] readBytes(RandomAccessFile file, long[] range) throws IOException {
+        byte[] bytes = new byte[(int) range[1]];
+        file.seek(range[0]);
+        file.readFully(bytes);
+        return bytes;
+    }
+
+    private static boolean contains(byte[] bytes, char c) {
+        for (byte b : bytes) {
+            if (b == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
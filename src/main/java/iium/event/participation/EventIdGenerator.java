@@ -0,0 +1,98 @@
+package iium.event.participation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates unique event IDs.
+ * Each ID packs a millisecond timestamp, a node number and a sequence into one long,
+ * so admins creating events in the same millisecond (or on different booths) never clash.
+ */
+public class EventIdGenerator {
+    private static final String PREFIX = "EVT";
+    private static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static EventIdGenerator instance;
+
+    private final long node;
+    // (timestamp << SEQUENCE_BITS) | sequence of the last ID handed out
+    private final AtomicLong lastState = new AtomicLong();
+
+    private EventIdGenerator(long node) {
+        this.node = node & MAX_NODE;
+    }
+
+    public static synchronized EventIdGenerator getInstance() {
+        if (instance == null) {
+            instance = new EventIdGenerator(resolveNode());
+        }
+        return instance;
+    }
+
+    /**
+     * Uses the "iium.node" system property when set, otherwise the process ID.
+     */
+    private static long resolveNode() {
+        String configured = System.getProperty("iium.node");
+        if (configured != null) {
+            try {
+                return Long.parseLong(configured.trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid iium.node value: " + configured);
+            }
+        }
+        return ProcessHandle.current().pid();
+    }
+
+    /**
+     * Returns the next ID as a long. Values only ever increase within a process.
+     * If the sequence for a millisecond runs out, or the clock moves backwards,
+     * the generator borrows the following millisecond instead of waiting.
+     */
+    public long nextRawId() {
+        while (true) {
+            long previous = lastState.get();
+            long now = System.currentTimeMillis() - EPOCH;
+            long next = now > (previous >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : previous + 1;
+            if (lastState.compareAndSet(previous, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long sequence = next & SEQUENCE_MASK;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    /**
+     * Returns the next ID in its text form, e.g. "EVT1A2B3C4D5E6F".
+     */
+    public String nextId() {
+        return encode(nextRawId());
+    }
+
+    /**
+     * Encodes a raw ID as the prefix followed by upper-case base 36.
+     * Generated IDs are at most 12 characters after the prefix until the 2060s, so they
+     * can never match the older "EVT" + 13-digit millisecond IDs already on disk.
+     */
+    public static String encode(long rawId) {
+        return PREFIX + Long.toString(rawId, 36).toUpperCase();
+    }
+
+    /**
+     * Decodes an ID produced by {@link #encode(long)}.
+     * @param id The event ID
+     * @return The raw ID, or -1 if the ID was not created by this generator
+     */
+    public static long decode(String id) {
+        if (id == null || !id.startsWith(PREFIX) || id.length() > PREFIX.length() + 12) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(id.substring(PREFIX.length()), 36);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
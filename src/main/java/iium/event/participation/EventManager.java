@@ -1,156 +1,1051 @@
 package iium.event.participation;
 
-import java.io.*;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class EventManager {
-    private static final String EVENT_FILE = "events.txt";
-    private final List<Event> events;
+    private static final int DEFAULT_ARCHIVE_AFTER_DAYS = 30;
+    private static final int DEFAULT_CLOSE_BEFORE_MINUTES = 0;
+    private static final int DEFAULT_REMINDER_BEFORE_MINUTES = 60;
+    
+    private final EventRepository repository;
+    private final EventArchive archive;
+    private final Map<String, EventPartition> partitions; // Faculty -> its live events, General first
+    private final RegistrationIndex registrationIndex; // Built on the first report, see ensureRegistrationIndex()
+    private boolean registrationIndexBuilt;
+    private final ScheduleIndex scheduleIndex; // Built on the loading thread, see buildScheduleIndex()
+    private volatile boolean scheduleIndexBuilt;
+    private final EventStatistics statistics;
+    private final PrefixIndex searchIndex; // Built on the first search, see ensureSearchIndex()
+    private volatile boolean searchIndexBuilt;
+    private final EventDetailCache detailCache; // Detail text shown by the dashboards, dropped on changes
+    private final ChangeLog changeLog;
+    private final ReplicaClient replica; // Set if this process is a read replica, see ReplicationServer
+    private final Map<String, Long> revisions; // Event ID -> change log sequence of its last details change
+    private long unknownRevision; // Revision of events without a known change, new after every reload
+    private final List<Runnable> externalChangeListeners;
+    private final TimerWheel timers;
+    private final Map<String, TimerWheel.Timeout> closeTimers; // Event ID -> its registration cutoff
+    private final Map<String, Map<Integer, TimerWheel.Timeout>> reminderTimers; // Event ID -> user ID -> reminder
+    private final Map<String, Long> timedStarts; // Event ID -> start its timers were scheduled for
+    private final Set<String> closedEvents; // Events whose registration cutoff has passed
+    private final List<BiConsumer<Event, String>> reminderListeners;
+    private final NotificationService notifications;
+    private boolean timersScheduled; // See scheduleAllTimers()
+    private final CompletableFuture<Void> loaded;
     private static EventManager instance;
 
     private EventManager() {
-        this.events = new ArrayList<>();
-        loadEvents();
+        this(Repositories.createEventRepository(), Repositories.createEventArchive());
+    }
+
+    private EventManager(EventRepository repository, EventArchive archive) {
+        this.repository = repository;
+        this.archive = archive;
+        this.partitions = new ConcurrentSkipListMap<>(
+            Comparator.comparing((String faculty) -> !Faculty.GENERAL.equals(faculty)).thenComparing(Comparator.naturalOrder()));
+        this.registrationIndex = new RegistrationIndex();
+        this.scheduleIndex = new ScheduleIndex();
+        this.statistics = new EventStatistics();
+        this.searchIndex = new PrefixIndex();
+        this.detailCache = EventDetailCache.getInstance();
+        this.revisions = new HashMap<>();
+        this.externalChangeListeners = new CopyOnWriteArrayList<>();
+        this.timers = TimerWheel.getInstance();
+        this.closeTimers = new HashMap<>();
+        this.reminderTimers = new HashMap<>();
+        this.timedStarts = new HashMap<>();
+        this.closedEvents = new HashSet<>();
+        this.reminderListeners = new CopyOnWriteArrayList<>();
+        this.notifications = NotificationService.getInstance();
+        this.loaded = new CompletableFuture<>();
+        // Created before loading, so no change logged after the load is missed
+        this.changeLog = ChangeLog.getInstance();
+        this.replica = ReplicaClient.isEnabled() ? new ReplicaClient(this) : null;
+        if (replica != null) {
+            return; // Changes arrive from the primary instead
+        }
+        changeLog.addListener(new ChangeLog.Listener() {
+            @Override
+            public void apply(Change change) {
+                applyExternalChange(change);
+            }
+
+            @Override
+            public void reload() {
+                reloadEvents();
+            }
+        });
     }
 
     public static synchronized EventManager getInstance() {
         if (instance == null) {
             instance = new EventManager();
+            instance.loadEvents();
+        }
+        instance.awaitLoaded();
+        return instance;
+    }
+
+    /**
+     * Creates the manager and loads the events on the given executor.
+     * Until loading finishes the getters return no events and changes wait for the load.
+     * @param executor The executor to load on
+     * @return The manager, possibly still loading
+     */
+    public static synchronized EventManager loadInBackground(Executor executor) {
+        if (instance == null) {
+            instance = new EventManager();
+            executor.execute(instance::loadEvents);
         }
         return instance;
     }
 
+    /**
+     * Completes once the stored events have been loaded.
+     */
+    public CompletionStage<Void> whenLoaded() {
+        return loaded.minimalCompletionStage();
+    }
+
+    public boolean isLoaded() {
+        return loaded.isDone();
+    }
+
+    private void awaitLoaded() {
+        loaded.join();
+    }
+
     /**
      * Manages events (creation, deletion, editing, viewing, registration).
      * Handles event capacity.
      */
 
-    // --- File Operations ---
+    // --- Persistence ---
     private void loadEvents() {
-        File file = new File(EVENT_FILE);
-        if (!file.exists()) return;
-
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                Event event = Event.fromFileString(line);
-                if (event != null) {
-                    events.add(event);
+        if (replica != null) {
+            replica.start(); // Loaded once the first snapshot is in, see replaceEvents()
+            return;
+        }
+        try {
+            List<Event> stored = repository.loadAll();
+            synchronized (this) {
+                for (Event event : stored) {
+                    if (partitionOf(event.getId()).add(event)) {
+                        statistics.update(event);
+                        if (searchIndexBuilt) {
+                            indexForSearch(event);
+                        }
+                    }
                 }
             }
-        } catch (FileNotFoundException e) {
+            loaded.complete(null);
+        } catch (RuntimeException e) {
             System.err.println("Error loading events: " + e.getMessage());
+            loaded.completeExceptionally(e);
+            return;
+        }
+        // After loading completes, since the change log may apply other instances' changes first
+        if (archivePastEvents() > 0) {
+            notifyExternalChange();
+        }
+        buildScheduleIndex();
+        scheduleAllTimers();
+    }
+    
+    /**
+     * Builds the registration index from all events. Reading every participant list is only
+     * worth it once reports are needed; afterwards the index is kept up to date on each change.
+     */
+    private void ensureRegistrationIndex() {
+        if (!registrationIndexBuilt) {
+            for (Event event : getAllEvents()) {
+                registrationIndex.put(event);
+            }
+            registrationIndexBuilt = true;
         }
     }
+    
+    /**
+     * Builds the students' schedules after loading, on the loading thread, so neither the
+     * first registration nor the dashboards' conflict checks wait for it. Participant lists are
+     * read first, while changes can still be made. Views are told to refresh afterwards, since
+     * conflicts shown before are empty.
+     */
+    private void buildScheduleIndex() {
+        long now = Event.toEpochMinute(LocalDateTime.now());
+        for (Event event : getAllEvents()) {
+            if (event.getEndMinute() > now && !event.isParticipantListLoaded()) {
+                event.getParticipantIds();
+            }
+        }
+        synchronized (this) {
+            ensureScheduleIndex();
+        }
+        notifyExternalChange();
+    }
 
-    private void saveEvents() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(EVENT_FILE))) {
-            for (Event event : events) {
-                writer.println(event.toFileString());
+    /**
+     * Builds the students' schedules from all events, reading every participant list once.
+     * Afterwards the schedules are kept up to date on each change. Only does the work if a
+     * registration comes in before {@link #buildScheduleIndex()} is done.
+     * Events that have ended are left out: registration closes when an event starts, so they
+     * can never overlap an event that is still open, and their participant lists stay unread.
+     */
+    private void ensureScheduleIndex() {
+        if (!scheduleIndexBuilt) {
+            long now = Event.toEpochMinute(LocalDateTime.now());
+            for (Event event : getAllEvents()) {
+                if (event.getEndMinute() > now) {
+                    scheduleIndex.put(event);
+                }
             }
-        } catch (IOException e) {
-            System.err.println("Error saving events: " + e.getMessage());
+            scheduleIndexBuilt = true;
         }
     }
 
+    // --- Archive ---
+    
+    /**
+     * Moves events that ended more than iium.archive.afterDays days ago (default 30, negative
+     * to never archive) from the live events into the archive, see {@link EventArchive}.
+     * Runs after loading, so the live events only grow with the events of the last few weeks.
+     * Other app instances drop the archived events as if they had been deleted.
+     * @return The number of events archived
+     */
+    public int archivePastEvents() {
+        int days = Integer.getInteger("iium.archive.afterDays", DEFAULT_ARCHIVE_AFTER_DAYS);
+        if (days < 0 || replica != null) {
+            return 0;
+        }
+        awaitLoaded();
+        long cutoff = Event.toEpochMinute(LocalDateTime.now().minusDays(days));
+        return changeLog.write(changes -> {
+            synchronized (this) {
+                List<Event> past = new ArrayList<>();
+                for (Event event : getAllEvents()) {
+                    long end = event.getEndMinute();
+                    if (end != Event.NO_TIME && end < cutoff) {
+                        past.add(event);
+                    }
+                }
+                if (past.isEmpty()) {
+                    return 0;
+                }
+                try {
+                    archive.append(past);
+                } catch (IOException e) {
+                    System.err.println("Error archiving past events: " + e.getMessage());
+                    return 0;
+                }
+                for (Event event : past) {
+                    removeEvent(event.getId());
+                    registrationIndex.remove(event.getId());
+                    scheduleIndex.remove(event);
+                    statistics.remove(event.getId());
+                    searchIndex.remove(event.getId());
+                    detailCache.invalidate(event.getId());
+                    cancelTimers(event.getId());
+                    revisions.put(event.getId(), changes.add(Change.Type.EVENT_DELETED, event.getId(), null));
+                }
+                // One rewrite per file that held them; files that failed to load are left alone
+                repository.deleteAll(past.stream().map(Event::getId).collect(Collectors.toList()));
+                return past.size();
+            }
+        });
+    }
+    
+    /**
+     * Reads the archived events from disk. Nothing is kept in memory, so call it only for
+     * history and reports.
+     * @return The archived events with their participants, in the order they were archived
+     */
+    public List<Event> getArchivedEvents() {
+        return archive.readAll();
+    }
+
+    // --- Backup ---
+    
+    /**
+     * Runs an action while no change can be made or applied to the events in this instance, and
+     * none to the users, e.g. to copy both for a consistent backup, see {@link Backup}.
+     * Keep the action short, since changes wait for it.
+     */
+    public void runLocked(Runnable action) {
+        awaitLoaded();
+        changeLog.runLocked(() -> {
+            // A replica's changes arrive from the primary under this lock only
+            synchronized (this) {
+                action.run();
+            }
+        });
+    }
+
     // --- Event Management ---
     public boolean addEvent(Event event) {
-        if (event == null || event.getTitle() == null || event.getTitle().trim().isEmpty() || 
-            event.getDate() == null || event.getCapacity() <= 0) {
-            return false;
+        awaitLoaded();
+        if (replica != null) {
+            if (event == null || event.getTitle() == null || event.getTitle().trim().isEmpty() || 
+                event.getDate() == null || event.getCapacity() <= 0) {
+                return false;
+            }
+            if (event.getId() == null || event.getId().isEmpty()) {
+                event.setId(EventIdGenerator.getInstance().nextId());
+            }
+            return replica.forward(Change.Type.EVENT_SAVED, event.getId(), ReplicationServer.NEW_EVENT + "," + event.toMetadataString());
         }
-        
-        events.add(event);
-        saveEvents();
-        return true;
+        return changeLog.write(changes -> {
+            synchronized (this) {
+                if (event == null || event.getTitle() == null || event.getTitle().trim().isEmpty() || 
+                    event.getDate() == null || event.getCapacity() <= 0) {
+                    return false;
+                }
+            
+                if (event.getId() == null || event.getId().isEmpty()) {
+                    event.setId(EventIdGenerator.getInstance().nextId());
+                }
+                if (!partitionOf(event.getId()).add(event)) {
+                    return false;
+                }
+            
+                if (registrationIndexBuilt) {
+                    registrationIndex.put(event);
+                }
+                if (scheduleIndexBuilt) {
+                    scheduleIndex.put(event);
+                }
+                if (timersScheduled) {
+                    scheduleTimers(event);
+                }
+                statistics.update(event);
+                if (searchIndexBuilt) {
+                    indexForSearch(event);
+                }
+                repository.save(event);
+                revisions.put(event.getId(), changes.add(Change.Type.EVENT_SAVED, event.getId(), event.toMetadataString()));
+                return true;
+            }
+        });
     }
     
+    /**
+     * Saves changed event details. If the given event is a copy, see {@link Event#copyDetails()},
+     * its details are copied into the managed event.
+     */
     public boolean updateEvent(Event updatedEvent) {
-        if (updatedEvent == null || updatedEvent.getId() == null) {
-            return false;
-        }
-        
-        for (int i = 0; i < events.size(); i++) {
-            if (events.get(i).getId().equals(updatedEvent.getId())) {
-                events.set(i, updatedEvent);
-                saveEvents();
+        return updateEvent(updatedEvent, -1);
+    }
+    
+    /**
+     * Saves changed event details unless they were changed elsewhere in the meantime.
+     * @param updatedEvent The event or a copy of it with the new details
+     * @param expectedRevision The {@link #getRevision(String)} the edit started from, or -1 to skip the check
+     * @return false if the event does not exist or its details were changed since the expected revision
+     */
+    public boolean updateEvent(Event updatedEvent, long expectedRevision) {
+        awaitLoaded();
+        if (replica != null) {
+            return updatedEvent != null && updatedEvent.getId() != null
+                && replica.forward(Change.Type.EVENT_SAVED, updatedEvent.getId(), expectedRevision + "," + updatedEvent.toMetadataString());
+        }
+        NotificationService.Notice[] notice = new NotificationService.Notice[1];
+        boolean updated = changeLog.write(changes -> {
+            synchronized (this) {
+                if (updatedEvent == null || updatedEvent.getId() == null) {
+                    return false;
+                }
+                Event event = findEvent(updatedEvent.getId());
+                if (event == null || (expectedRevision >= 0 && getRevision(event.getId()) != expectedRevision)) {
+                    return false;
+                }
+                if (event != updatedEvent) {
+                    Event before = event.copyDetails();
+                    event.copyDetailsFrom(updatedEvent);
+                    detailCache.invalidate(event.getId());
+                    notice[0] = NotificationService.changeNotice(before, event);
+                }
+                if (registrationIndexBuilt) {
+                    registrationIndex.put(event);
+                }
+                if (scheduleIndexBuilt) {
+                    scheduleIndex.put(event);
+                }
+                if (timersScheduled) {
+                    scheduleTimers(event);
+                }
+                statistics.update(event);
+                if (searchIndexBuilt) {
+                    indexForSearch(event);
+                }
+                repository.save(event);
+                revisions.put(event.getId(), changes.add(Change.Type.EVENT_SAVED, event.getId(), event.toMetadataString()));
                 return true;
             }
-        }
-        return false;
+        });
+        notifications.submit(notice[0]); // Outside the lock, it can wait for queue space
+        return updated;
     }
     
     public boolean deleteEvent(String eventId) {
-        if (eventId == null) {
-            return false;
+        awaitLoaded();
+        if (replica != null) {
+            return eventId != null && replica.forward(Change.Type.EVENT_DELETED, eventId, null);
         }
-        
-        boolean removed = events.removeIf(event -> event.getId().equals(eventId));
-        if (removed) {
-            saveEvents();
-        }
-        return removed;
+        NotificationService.Notice[] notice = new NotificationService.Notice[1];
+        boolean deleted = changeLog.write(changes -> {
+            synchronized (this) {
+                if (eventId == null) {
+                    return false;
+                }
+            
+                Event removedEvent = removeEvent(eventId);
+                boolean removed = removedEvent != null;
+                if (removed) {
+                    notice[0] = NotificationService.cancellationNotice(removedEvent); // Before the participant list is deleted
+                    registrationIndex.remove(eventId);
+                    scheduleIndex.remove(removedEvent);
+                    statistics.remove(eventId);
+                    searchIndex.remove(eventId);
+                    detailCache.invalidate(eventId);
+                    cancelTimers(eventId);
+                    repository.delete(eventId);
+                    revisions.put(eventId, changes.add(Change.Type.EVENT_DELETED, eventId, null));
+                }
+                return removed;
+            }
+        });
+        notifications.submit(notice[0]);
+        return deleted;
+    }
+
+    /**
+     * Gets the change log sequence number of the last change to an event's details, by any
+     * app instance. An edit can pass it to {@link #updateEvent(Event, long)} to detect that
+     * someone else changed the event while it was being edited.
+     */
+    public synchronized long getRevision(String eventId) {
+        return revisions.getOrDefault(eventId, unknownRevision);
     }
 
     // --- Getters ---
+    // These take only the lock of the partitions they read, see EventPartition, so they do not
+    // wait for changes to other faculties or for event files being written.
+    
+    /**
+     * Gets the events of all faculties, General first, then by faculty code. Each faculty's
+     * events are copied at a slightly different moment.
+     */
     public List<Event> getAllEvents() {
-        return new ArrayList<>(events);
+        List<Event> all = new ArrayList<>();
+        for (EventPartition partition : partitions.values()) {
+            all.addAll(partition.getEvents());
+        }
+        return all;
     }
     
-    public List<Event> getEventsByOrganizer(String organizerId) {
-        return events.stream()
-            .filter(event -> event.getOrganizerId().equals(organizerId))
+    /**
+     * Gets the events of one faculty, see {@link Faculty}.
+     */
+    public List<Event> getEventsByFaculty(String faculty) {
+        EventPartition partition = partitions.get(faculty);
+        return partition != null ? partition.getEvents() : new ArrayList<>();
+    }
+    
+    /**
+     * Gets the faculties that have live events, General first.
+     */
+    public List<String> getFaculties() {
+        List<String> faculties = new ArrayList<>();
+        for (EventPartition partition : partitions.values()) {
+            if (partition.size() > 0) {
+                faculties.add(partition.getFaculty());
+            }
+        }
+        return faculties;
+    }
+    
+    /**
+     * Gets the events of all faculties that match a filter. The faculties are searched in
+     * parallel, each under its own lock; the result is in the order of {@link #getAllEvents()}.
+     */
+    public List<Event> findEvents(Predicate<Event> filter) {
+        return new ArrayList<>(partitions.values()).parallelStream()
+            .flatMap(partition -> partition.find(filter).stream())
             .collect(Collectors.toList());
     }
     
+    /**
+     * Suggests live events whose title or location has a word starting with the typed text,
+     * for type-ahead search. Takes microseconds however many events there are, see {@link PrefixIndex}.
+     * @param prefix The text typed so far
+     * @param limit The most events to return
+     */
+    public List<Event> suggestEvents(String prefix, int limit) {
+        ensureSearchIndex();
+        List<Event> suggestions = new ArrayList<>();
+        for (String eventId : searchIndex.complete(prefix, limit)) {
+            Event event = findEvent(eventId);
+            if (event != null) {
+                suggestions.add(event);
+            }
+        }
+        return suggestions;
+    }
+    
+    /**
+     * Indexes the titles and locations of all events for search. Done on the first search
+     * instead of on loading, so startup does not pay for it; afterwards the index is kept up
+     * to date on each change.
+     */
+    private void ensureSearchIndex() {
+        if (!searchIndexBuilt) {
+            synchronized (this) {
+                if (!searchIndexBuilt) {
+                    for (Event event : getAllEvents()) {
+                        indexForSearch(event);
+                    }
+                    searchIndexBuilt = true;
+                }
+            }
+        }
+    }
+    
+    private void indexForSearch(Event event) {
+        searchIndex.put(event.getId(), event.getTitle(), event.getLocation());
+    }
+    
+    public List<Event> getEventsByOrganizer(String organizerId) {
+        return findEvents(event -> event.getOrganizerId().equals(organizerId));
+    }
+    
     public Optional<Event> getEventById(String eventId) {
-        return events.stream()
-            .filter(event -> event.getId().equals(eventId))
-            .findFirst();
+        return Optional.ofNullable(findEvent(eventId));
+    }
+    
+    /**
+     * Gets the partition of an event's faculty, creating it for the first event of a faculty.
+     */
+    private EventPartition partitionOf(String eventId) {
+        return partitions.computeIfAbsent(Faculty.of(eventId), EventPartition::new);
+    }
+    
+    private Event findEvent(String eventId) {
+        EventPartition partition = partitions.get(Faculty.of(eventId));
+        return partition != null ? partition.get(eventId) : null;
+    }
+    
+    private Event removeEvent(String eventId) {
+        EventPartition partition = partitions.get(Faculty.of(eventId));
+        return partition != null ? partition.remove(eventId) : null;
     }
 
     // --- Registration Management ---
     public boolean registerParticipant(String eventId, String username) {
-        if (username == null || username.trim().isEmpty() || eventId == null) {
-            return false;
-        }
-        
-        Optional<Event> eventOpt = getEventById(eventId);
-        if (!eventOpt.isPresent()) {
-            return false;
+        awaitLoaded();
+        if (replica != null) {
+            return eventId != null && username != null && replica.forward(Change.Type.REGISTERED, eventId, username);
         }
-        
-        Event event = eventOpt.get();
-        boolean success = event.registerParticipant(username);
-        if (success) {
-            saveEvents();
-        }
-        return success;
+        // Runs after other instances' registrations are applied, so capacity is checked against them
+        return changeLog.write(changes -> {
+            synchronized (this) {
+                if (username == null || username.trim().isEmpty() || eventId == null) {
+                    return false;
+                }
+            
+                Optional<Event> eventOpt = getEventById(eventId);
+                if (!eventOpt.isPresent()) {
+                    return false;
+                }
+            
+                Event event = eventOpt.get();
+                if (isRegistrationClosed(eventId)) {
+                    return false;
+                }
+                int userId = UserIdRegistry.getInstance().idOf(username);
+                ensureScheduleIndex();
+                if (!scheduleIndex.conflicts(userId, eventId).isEmpty()) {
+                    return false;
+                }
+                boolean success = event.registerParticipant(username);
+                if (success) {
+                    if (registrationIndexBuilt) {
+                        registrationIndex.register(eventId, userId);
+                    }
+                    scheduleIndex.register(eventId, userId);
+                    if (timersScheduled) {
+                        scheduleReminder(event, userId);
+                    }
+                    statistics.update(event);
+                    repository.save(event);
+                    changes.add(Change.Type.REGISTERED, eventId, event.getRegisteredCount() + "," + username);
+                }
+                return success;
+            }
+        });
     }
     
     public boolean unregisterParticipant(String eventId, String username) {
-        if (username == null || username.trim().isEmpty() || eventId == null) {
-            return false;
-        }
-        
-        Optional<Event> eventOpt = getEventById(eventId);
-        if (!eventOpt.isPresent()) {
-            return false;
-        }
-        
-        Event event = eventOpt.get();
-        boolean success = event.unregisterParticipant(username);
-        if (success) {
-            saveEvents();
+        awaitLoaded();
+        if (replica != null) {
+            return eventId != null && username != null && replica.forward(Change.Type.UNREGISTERED, eventId, username);
         }
-        return success;
+        return changeLog.write(changes -> {
+            synchronized (this) {
+                if (username == null || username.trim().isEmpty() || eventId == null) {
+                    return false;
+                }
+            
+                Optional<Event> eventOpt = getEventById(eventId);
+                if (!eventOpt.isPresent()) {
+                    return false;
+                }
+            
+                Event event = eventOpt.get();
+                boolean success = event.unregisterParticipant(username);
+                if (success) {
+                    int userId = UserIdRegistry.getInstance().idOf(username);
+                    if (registrationIndexBuilt) {
+                        registrationIndex.unregister(eventId, userId);
+                    }
+                    if (scheduleIndexBuilt) {
+                        scheduleIndex.unregister(eventId, userId);
+                    }
+                    cancelReminder(eventId, userId);
+                    statistics.update(event);
+                    repository.save(event);
+                    changes.add(Change.Type.UNREGISTERED, eventId, event.getRegisteredCount() + "," + username);
+                }
+                return success;
+            }
+        });
     }
     
-    public List<String> getEventParticipants(String eventId) {
+    public synchronized List<String> getEventParticipants(String eventId) {
         return getEventById(eventId)
             .map(Event::getParticipants)
             .map(ArrayList::new)
             .orElse(new ArrayList<>());
     }
+
+    /**
+     * Gets the events the user is registered for whose time overlaps the given event.
+     * {@link #registerParticipant(String, String)} refuses registrations that would overlap.
+     * Takes no lock on the manager, so table cells can call it while a change is being saved.
+     * @return The overlapping events in start order, empty if there are none or the schedules
+     * are still being built after loading
+     */
+    public List<Event> getConflictingEvents(String eventId, String username) {
+        List<Event> conflicts = new ArrayList<>();
+        if (!scheduleIndexBuilt) {
+            return conflicts;
+        }
+        int userId = UserIdRegistry.getInstance().find(username);
+        if (userId >= 0) {
+            for (String conflictId : scheduleIndex.conflicts(userId, eventId)) {
+                getEventById(conflictId).ifPresent(conflicts::add);
+            }
+        }
+        return conflicts;
+    }
+    
+    /**
+     * Gets a counter that changes whenever the user's registrations or their times change,
+     * so views can tell whether conflicts they computed are still current.
+     */
+    public int getScheduleVersion(String username) {
+        int userId = UserIdRegistry.getInstance().find(username);
+        return userId >= 0 ? scheduleIndex.version(userId) : 0;
+    }
+
+    /**
+     * Gets the running registration aggregates. They are kept up to date by this manager.
+     */
+    public EventStatistics getStatistics() {
+        return statistics;
+    }
+    
+    // --- Changes by other app instances ---
+    
+    /**
+     * Adds a listener called, on the change log watcher thread, after changes made by another
+     * app instance were applied, on the loading thread if events were archived after loading,
+     * and on the timer thread when an event's registration closed.
+     */
+    public void addExternalChangeListener(Runnable listener) {
+        externalChangeListeners.add(listener);
+    }
+    
+    public void removeExternalChangeListener(Runnable listener) {
+        externalChangeListeners.remove(listener);
+    }
+    
+    /**
+     * Applies a change made by another app instance or, on a replica, by the primary.
+     */
+    void applyExternalChange(Change change) {
+        awaitLoaded();
+        synchronized (this) {
+            String eventId = change.getKey();
+            Event event = findEvent(eventId);
+            switch (change.getType()) {
+                case EVENT_SAVED:
+                    Event stored = Event.fromFileString(change.getData());
+                    if (stored == null) {
+                        return;
+                    }
+                    if (event == null) {
+                        event = stored;
+                        partitionOf(eventId).add(event);
+                        if (replica == null) {
+                            repository.storedElsewhere(event);
+                        }
+                    } else {
+                        event.copyDetailsFrom(stored);
+                        detailCache.invalidate(eventId);
+                    }
+                    if (registrationIndexBuilt) {
+                        registrationIndex.put(event);
+                    }
+                    if (scheduleIndexBuilt) {
+                        scheduleIndex.put(event);
+                    }
+                    if (timersScheduled) {
+                        scheduleTimers(event);
+                    }
+                    statistics.update(event);
+                    if (searchIndexBuilt) {
+                        indexForSearch(event);
+                    }
+                    revisions.put(eventId, change.getSequence());
+                    break;
+                case EVENT_DELETED:
+                    if (event != null) {
+                        removeEvent(eventId);
+                        registrationIndex.remove(eventId);
+                        scheduleIndex.remove(event);
+                        statistics.remove(eventId);
+                        searchIndex.remove(eventId);
+                        detailCache.invalidate(eventId);
+                        cancelTimers(eventId);
+                        if (replica == null) {
+                            repository.deletedElsewhere(eventId);
+                        }
+                    }
+                    revisions.put(eventId, change.getSequence());
+                    break;
+                case REGISTERED:
+                case UNREGISTERED:
+                    String[] data = change.getData().split(",", 2);
+                    if (event == null || data.length < 2) {
+                        return;
+                    }
+                    boolean registered = change.getType() == Change.Type.REGISTERED;
+                    event.applyStoredRegistration(data[1], registered, Integer.parseInt(data[0]));
+                    int userId = UserIdRegistry.getInstance().idOf(data[1]);
+                    if (registrationIndexBuilt) {
+                        if (registered) {
+                            registrationIndex.register(eventId, userId);
+                        } else {
+                            registrationIndex.unregister(eventId, userId);
+                        }
+                    }
+                    if (scheduleIndexBuilt) {
+                        if (registered) {
+                            scheduleIndex.register(eventId, userId);
+                        } else {
+                            scheduleIndex.unregister(eventId, userId);
+                        }
+                    }
+                    if (registered && timersScheduled) {
+                        scheduleReminder(event, userId);
+                    } else if (!registered) {
+                        cancelReminder(eventId, userId);
+                    }
+                    statistics.update(event);
+                    break;
+                default:
+                    return;
+            }
+        }
+        notifyExternalChange();
+    }
+    
+    /**
+     * Replaces all events with the stored ones, after changes were missed, see {@link ChangeLog}.
+     */
+    private void reloadEvents() {
+        awaitLoaded();
+        replaceEvents(repository.loadAll(), Collections.emptyMap());
+    }
+    
+    /**
+     * Replaces all events, e.g. with a snapshot from the primary on a replica.
+     * Completes loading if this is the first set of events.
+     * @param newEvents The events
+     * @param newRevisions Their known revisions, see {@link #getRevision(String)}
+     */
+    void replaceEvents(List<Event> newEvents, Map<String, Long> newRevisions) {
+        synchronized (this) {
+            for (EventPartition partition : partitions.values()) {
+                partition.clear();
+            }
+            statistics.clear();
+            searchIndex.clear();
+            detailCache.clear();
+            searchIndexBuilt = false;
+            registrationIndex.clear();
+            registrationIndexBuilt = false;
+            scheduleIndex.clear();
+            scheduleIndexBuilt = false;
+            for (String eventId : new ArrayList<>(timedStarts.keySet())) {
+                cancelTimers(eventId);
+            }
+            timersScheduled = false;
+            // Changes may have been missed, so edits started before this must not match
+            revisions.clear();
+            revisions.putAll(newRevisions);
+            unknownRevision = unknownRevision == 0 ? Long.MIN_VALUE : unknownRevision + 1;
+            for (Event event : newEvents) {
+                if (partitionOf(event.getId()).add(event)) {
+                    statistics.update(event);
+                    if (searchIndexBuilt) {
+                        indexForSearch(event);
+                    }
+                }
+            }
+        }
+        if (!loaded.complete(null)) {
+            notifyExternalChange();
+        }
+        buildScheduleIndex();
+        scheduleAllTimers();
+    }
+    
+    /**
+     * Gets the connection to the primary, or null if this process is not a read replica.
+     */
+    ReplicaClient getReplicaClient() {
+        return replica;
+    }
+    
+    /**
+     * Gets how old the events may be. Always 0 except on a read replica, see {@link ReplicaClient}.
+     */
+    public long getStalenessMillis() {
+        return replica != null ? replica.getStalenessMillis() : 0;
+    }
+    
+    private void notifyExternalChange() {
+        for (Runnable listener : externalChangeListeners) {
+            listener.run();
+        }
+    }
+    
+    // --- Timers ---
+    
+    /**
+     * Schedules the registration cutoffs and participant reminders of all events, after
+     * loading. Participant lists of events whose reminders are still to come are read first,
+     * while changes can still be made, since each of their participants gets a reminder timer.
+     * Lists of events already under way are not read at all.
+     */
+    private void scheduleAllTimers() {
+        for (Event event : getAllEvents()) {
+            if (hasPendingReminders(event) && !event.isParticipantListLoaded()) {
+                event.getParticipantIds();
+            }
+        }
+        synchronized (this) {
+            for (Event event : getAllEvents()) {
+                scheduleTimers(event);
+            }
+            timersScheduled = true;
+        }
+    }
+    
+    /**
+     * Schedules an event's registration cutoff, iium.registration.closeBeforeMinutes before it
+     * starts (default 0), and its participants' reminders, replacing the ones scheduled before.
+     * Does nothing if the start has not changed, so saving other details, e.g. the capacity,
+     * costs nothing.
+     */
+    private void scheduleTimers(Event event) {
+        String eventId = event.getId();
+        long start = Event.toEpochMinute(event.getDate());
+        Long scheduledStart = timedStarts.get(eventId);
+        if (scheduledStart != null && scheduledStart == start) {
+            return;
+        }
+        cancelTimers(eventId);
+        timedStarts.put(eventId, start);
+        if (start == Event.NO_TIME) {
+            return;
+        }
+        long closeAt = registrationCutoff(start);
+        if (closeAt <= Event.toEpochMinute(LocalDateTime.now())) {
+            closedEvents.add(eventId);
+        } else {
+            closeTimers.put(eventId, timers.schedule(millisUntil(closeAt), () -> closeRegistration(eventId)));
+        }
+        if (hasPendingReminders(event)) {
+            event.getParticipantIds().forEach(userId -> scheduleReminder(event, userId));
+        }
+    }
+
+    /**
+     * Checks whether an event's reminders are still to be sent, without reading its participants.
+     */
+    private boolean hasPendingReminders(Event event) {
+        long start = Event.toEpochMinute(event.getDate());
+        int before = reminderBeforeMinutes();
+        return start != Event.NO_TIME && before >= 0 && start - before > Event.toEpochMinute(LocalDateTime.now());
+    }
+    
+    /**
+     * Schedules a participant's reminder, iium.reminder.beforeMinutes before the event starts
+     * (default 60, negative for none). Reminders whose time has passed are not sent, so a
+     * restart does not send them again.
+     */
+    private void scheduleReminder(Event event, int userId) {
+        if (!hasPendingReminders(event)) {
+            return;
+        }
+        long start = Event.toEpochMinute(event.getDate());
+        String eventId = event.getId();
+        TimerWheel.Timeout reminder = timers.schedule(millisUntil(start - reminderBeforeMinutes()), () -> remind(eventId, userId));
+        TimerWheel.Timeout old = reminderTimers.computeIfAbsent(eventId, id -> new HashMap<>()).put(userId, reminder);
+        if (old != null) {
+            old.cancel();
+        }
+    }
+    
+    private void cancelReminder(String eventId, int userId) {
+        Map<Integer, TimerWheel.Timeout> reminders = reminderTimers.get(eventId);
+        TimerWheel.Timeout reminder = reminders != null ? reminders.remove(userId) : null;
+        if (reminder != null) {
+            reminder.cancel();
+        }
+    }
+    
+    private void cancelTimers(String eventId) {
+        TimerWheel.Timeout close = closeTimers.remove(eventId);
+        if (close != null) {
+            close.cancel();
+        }
+        Map<Integer, TimerWheel.Timeout> reminders = reminderTimers.remove(eventId);
+        if (reminders != null) {
+            for (TimerWheel.Timeout reminder : reminders.values()) {
+                reminder.cancel();
+            }
+        }
+        closedEvents.remove(eventId);
+        timedStarts.remove(eventId);
+    }
+    
+    private void closeRegistration(String eventId) {
+        synchronized (this) {
+            closeTimers.remove(eventId);
+            closedEvents.add(eventId);
+        }
+        notifyExternalChange();
+    }
+    
+    private void remind(String eventId, int userId) {
+        Event event;
+        synchronized (this) {
+            Map<Integer, TimerWheel.Timeout> reminders = reminderTimers.get(eventId);
+            if (reminders == null || reminders.remove(userId) == null) {
+                return; // Cancelled while it was due
+            }
+            event = findEvent(eventId);
+        }
+        String username = UserIdRegistry.getInstance().usernameOf(userId);
+        for (BiConsumer<Event, String> listener : reminderListeners) {
+            listener.accept(event, username);
+        }
+    }
+    
+    private static long registrationCutoff(long start) {
+        return start - Integer.getInteger("iium.registration.closeBeforeMinutes", DEFAULT_CLOSE_BEFORE_MINUTES);
+    }
+    
+    private static int reminderBeforeMinutes() {
+        return Integer.getInteger("iium.reminder.beforeMinutes", DEFAULT_REMINDER_BEFORE_MINUTES);
+    }
+    
+    /**
+     * Gets the milliseconds from now until a time given as by {@link Event#toEpochMinute(String)}.
+     */
+    private static long millisUntil(long epochMinute) {
+        LocalDateTime now = LocalDateTime.now();
+        return epochMinute * 60_000 - (now.toEpochSecond(ZoneOffset.UTC) * 1000 + now.getNano() / 1_000_000);
+    }
+    
+    /**
+     * Checks whether registration for an event has closed, see {@link #scheduleTimers(Event)}.
+     */
+    public synchronized boolean isRegistrationClosed(String eventId) {
+        if (timersScheduled) {
+            return closedEvents.contains(eventId);
+        }
+        // Timers are scheduled just after loading; until then the time decides
+        Event event = findEvent(eventId);
+        long start = event != null ? Event.toEpochMinute(event.getDate()) : Event.NO_TIME;
+        return start != Event.NO_TIME && registrationCutoff(start) <= Event.toEpochMinute(LocalDateTime.now());
+    }
+    
+    /**
+     * Adds a listener called on the timer thread when a participant is due a reminder.
+     * It gets the event and the participant's username and must return quickly.
+     */
+    public void addReminderListener(BiConsumer<Event, String> listener) {
+        reminderListeners.add(listener);
+    }
+    
+    public void removeReminderListener(BiConsumer<Event, String> listener) {
+        reminderListeners.remove(listener);
+    }
+    
+    // --- Registration Reports ---
+    public synchronized List<String> getStudentsInBoth(String firstEventId, String secondEventId) {
+        ensureRegistrationIndex();
+        return RegistrationIndex.toUsernames(registrationIndex.both(firstEventId, secondEventId));
+    }
+    
+    public synchronized List<String> getStudentsInEither(String firstEventId, String secondEventId) {
+        ensureRegistrationIndex();
+        return RegistrationIndex.toUsernames(registrationIndex.either(firstEventId, secondEventId));
+    }
+    
+    public synchronized List<String> getStudentsInFirstOnly(String firstEventId, String secondEventId) {
+        ensureRegistrationIndex();
+        return RegistrationIndex.toUsernames(registrationIndex.firstButNotSecond(firstEventId, secondEventId));
+    }
+    
+    public synchronized int countUniqueAttendees(Collection<String> eventIds) {
+        return countUniqueAttendees(eventIds, Collections.emptyList());
+    }
+    
+    /**
+     * Counts the distinct students registered for at least one of the given live events or
+     * archived events, see {@link #getArchivedEvents()}.
+     */
+    public synchronized int countUniqueAttendees(Collection<String> eventIds, Collection<Event> archivedEvents) {
+        ensureRegistrationIndex();
+        CompressedBitmap attendees = registrationIndex.union(eventIds);
+        for (Event event : archivedEvents) {
+            attendees = CompressedBitmap.or(attendees, CompressedBitmap.of(event.getParticipantIds()));
+        }
+        return attendees.cardinality();
+    }
 }
@@ -0,0 +1,81 @@
+package iium.event.participation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The live events of one faculty, see {@link Faculty}, in the order they were added.
+ * Each partition has its own lock, so reading one faculty's events waits neither for changes
+ * to other faculties nor for event files being written. EventManager only changes a partition
+ * while it also holds its own lock.
+ */
+public class EventPartition {
+    private final String faculty;
+    private final List<Event> events = new ArrayList<>();
+    private final Map<String, Event> eventsById = new HashMap<>();
+
+    public EventPartition(String faculty) {
+        this.faculty = faculty;
+    }
+
+    public String getFaculty() {
+        return faculty;
+    }
+
+    /**
+     * Adds an event.
+     * @return false if an event with its ID is already in the partition
+     */
+    public synchronized boolean add(Event event) {
+        if (eventsById.putIfAbsent(event.getId(), event) != null) {
+            return false;
+        }
+        events.add(event);
+        return true;
+    }
+
+    /**
+     * Removes an event.
+     * @return The removed event, or null if there was none with that ID
+     */
+    public synchronized Event remove(String eventId) {
+        Event event = eventsById.remove(eventId);
+        if (event != null) {
+            events.remove(event);
+        }
+        return event;
+    }
+
+    public synchronized Event get(String eventId) {
+        return eventsById.get(eventId);
+    }
+
+    public synchronized List<Event> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    /**
+     * Gets the events that match a filter, checked while holding the partition's lock.
+     */
+    public synchronized List<Event> find(Predicate<Event> filter) {
+        List<Event> found = new ArrayList<>();
+        for (Event event : events) {
+            if (filter.test(event)) {
+                found.add(event);
+            }
+        }
+        return found;
+    }
+
+    public synchronized int size() {
+        return events.size();
+    }
+
+    public synchronized void clear() {
+        events.clear();
+        eventsById.clear();
+    }
+}
@@ -0,0 +1,61 @@
+package iium.event.participation;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage for events.
+ * EventManager keeps the working set in memory and calls these methods to persist each change,
+ * so implementations can update only the affected records.
+ */
+public interface EventRepository {
+    /**
+     * Loads all stored events in their stored order.
+     * @return The events, empty if nothing has been stored yet
+     */
+    List<Event> loadAll();
+
+    /**
+     * Inserts a new event or replaces the stored copy of an existing one.
+     * @param event The event to store
+     */
+    void save(Event event);
+
+    /**
+     * Removes an event.
+     * @param eventId The ID of the event to remove
+     */
+    void delete(String eventId);
+
+    /**
+     * Removes several events at once. Only the records that held them are rewritten.
+     * The default deletes them one by one.
+     * @param eventIds The IDs of the events to remove
+     */
+    default void deleteAll(Collection<String> eventIds) {
+        for (String eventId : eventIds) {
+            delete(eventId);
+        }
+    }
+
+    /**
+     * Replaces everything stored with the given events.
+     * @param events All events, in order
+     */
+    void saveAll(List<Event> events);
+
+    /**
+     * Takes note of an event that another app instance has stored, see {@link ChangeLog}.
+     * Nothing is written. The default does nothing, for backends that cannot be shared.
+     * @param event The new event, with its participant list not loaded
+     */
+    default void storedElsewhere(Event event) {
+    }
+
+    /**
+     * Takes note of an event that another app instance has deleted. Nothing is written.
+     * @param eventId The ID of the deleted event
+     */
+    default void deletedElsewhere(String eventId) {
+    }
+}
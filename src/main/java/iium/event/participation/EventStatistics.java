@@ -0,0 +1,167 @@
+package iium.event.participation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Running registration aggregates, updated by EventManager on every change.
+ * Totals, per-organizer sums and the full/nearly-full sets change in O(1) per update;
+ * the popularity ranking is a sorted set and changes in O(log n).
+ */
+public class EventStatistics {
+    /** Events at or above this fill ratio (but not full) count as nearly full. */
+    public static final double NEARLY_FULL_RATIO = 0.9;
+
+    private static final Comparator<Entry> BY_POPULARITY = Comparator
+        .comparingInt((Entry entry) -> entry.registered).reversed()
+        .thenComparing(entry -> entry.eventId);
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, long[]> organizerTotals = new HashMap<>(); // {registered, capacity}
+    private final Set<String> fullEventIds = new LinkedHashSet<>();
+    private final Set<String> nearlyFullEventIds = new LinkedHashSet<>();
+    private final TreeSet<Entry> popularity = new TreeSet<>(BY_POPULARITY);
+    private long totalRegistrations;
+    private long totalCapacity;
+
+    /**
+     * The values last recorded for an event, so they can be subtracted again
+     * even after the Event object itself has been modified.
+     */
+    private static final class Entry {
+        final String eventId;
+        final String organizerId;
+        final int registered;
+        final int capacity;
+
+        Entry(Event event) {
+            this.eventId = event.getId();
+            this.organizerId = event.getOrganizerId();
+            this.registered = event.getRegisteredCount();
+            this.capacity = event.getCapacity();
+        }
+    }
+
+    /**
+     * Records a new event or the new state of an existing one.
+     */
+    public synchronized void update(Event event) {
+        remove(event.getId());
+        Entry entry = new Entry(event);
+        entries.put(entry.eventId, entry);
+        totalRegistrations += entry.registered;
+        totalCapacity += entry.capacity;
+        long[] totals = organizerTotals.computeIfAbsent(entry.organizerId, id -> new long[2]);
+        totals[0] += entry.registered;
+        totals[1] += entry.capacity;
+        if (entry.registered >= entry.capacity) {
+            fullEventIds.add(entry.eventId);
+        } else if (entry.registered >= entry.capacity * NEARLY_FULL_RATIO) {
+            nearlyFullEventIds.add(entry.eventId);
+        }
+        popularity.add(entry);
+    }
+
+    /**
+     * Removes an event from all aggregates.
+     */
+    public synchronized void remove(String eventId) {
+        Entry entry = entries.remove(eventId);
+        if (entry == null) {
+            return;
+        }
+        totalRegistrations -= entry.registered;
+        totalCapacity -= entry.capacity;
+        long[] totals = organizerTotals.get(entry.organizerId);
+        totals[0] -= entry.registered;
+        totals[1] -= entry.capacity;
+        if (totals[1] == 0) {
+            organizerTotals.remove(entry.organizerId);
+        }
+        fullEventIds.remove(eventId);
+        nearlyFullEventIds.remove(eventId);
+        popularity.remove(entry);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        organizerTotals.clear();
+        fullEventIds.clear();
+        nearlyFullEventIds.clear();
+        popularity.clear();
+        totalRegistrations = 0;
+        totalCapacity = 0;
+    }
+
+    public synchronized int getEventCount() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalRegistrations() {
+        return totalRegistrations;
+    }
+
+    public synchronized long getTotalCapacity() {
+        return totalCapacity;
+    }
+
+    /**
+     * Gets the fill percentage over all events.
+     */
+    public synchronized double getFillPercentage() {
+        return percentage(totalRegistrations, totalCapacity);
+    }
+
+    /**
+     * Gets the fill percentage of one event, or 0 if it is unknown.
+     */
+    public synchronized double getFillPercentage(String eventId) {
+        Entry entry = entries.get(eventId);
+        return entry == null ? 0 : percentage(entry.registered, entry.capacity);
+    }
+
+    /**
+     * Gets the fill percentage over all events of one organizer, or 0 if it has none.
+     */
+    public synchronized double getOrganizerFillPercentage(String organizerId) {
+        long[] totals = organizerTotals.get(organizerId);
+        return totals == null ? 0 : percentage(totals[0], totals[1]);
+    }
+
+    public synchronized Set<String> getFullEventIds() {
+        return new LinkedHashSet<>(fullEventIds);
+    }
+
+    public synchronized Set<String> getNearlyFullEventIds() {
+        return new LinkedHashSet<>(nearlyFullEventIds);
+    }
+
+    /**
+     * Gets the IDs of the most registered events, most popular first.
+     * @param limit The maximum number of IDs to return
+     */
+    public synchronized List<String> getTopEventIds(int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<String> top = new ArrayList<>(Math.min(limit, popularity.size()));
+        for (Entry entry : popularity) {
+            if (top.size() == limit) {
+                break;
+            }
+            top.add(entry.eventId);
+        }
+        return top;
+    }
+
+    private static double percentage(long part, long whole) {
+        return whole <= 0 ? 0 : 100.0 * part / whole;
+    }
+}
@@ -0,0 +1,74 @@
+package iium.event.participation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The faculty (kulliyyah) an event belongs to, which partitions the events, see {@link EventManager}.
+ * The faculty is part of the event ID, as an upper-case code before a dot, e.g. "KICT.EVT1A2B3C",
+ * so any ID, including one read from the change log or sent by a replica, can be routed to
+ * its partition without a lookup. IDs without a code, including all IDs created before
+ * partitioning, belong to {@link #GENERAL}. An event cannot move to another faculty.
+ */
+public final class Faculty {
+    public static final String GENERAL = "General";
+    private static final char SEPARATOR = '.';
+    private static final int MAX_CODE_LENGTH = 12;
+    private static final String DEFAULT_FACULTIES = "KICT,KOE,KENMS,AIKOL,KIRKHS,KAED,KOED,KOS,KOM,KAHS";
+
+    private Faculty() {
+    }
+
+    /**
+     * Gets the faculties admins can create events for: General followed by the codes in the
+     * comma-separated iium.faculties property, by default the Gombak and Kuantan kulliyyahs.
+     */
+    public static List<String> all() {
+        List<String> faculties = new ArrayList<>();
+        faculties.add(GENERAL);
+        for (String code : System.getProperty("iium.faculties", DEFAULT_FACULTIES).split(",")) {
+            code = code.trim().toUpperCase();
+            if (isCode(code) && !faculties.contains(code)) {
+                faculties.add(code);
+            }
+        }
+        return faculties;
+    }
+
+    /**
+     * Gets the faculty of an event ID.
+     * @return The code before the dot, or {@link #GENERAL} if there is none
+     */
+    public static String of(String eventId) {
+        int separator = eventId != null ? eventId.indexOf(SEPARATOR) : -1;
+        if (separator <= 0) {
+            return GENERAL;
+        }
+        String code = eventId.substring(0, separator);
+        return isCode(code) ? code : GENERAL;
+    }
+
+    /**
+     * Puts a faculty's code in front of an unqualified event ID, e.g. a generated one.
+     * @param faculty The faculty code, or {@link #GENERAL} to leave the ID as it is
+     */
+    public static String qualify(String faculty, String eventId) {
+        return faculty == null || GENERAL.equals(faculty) ? eventId : faculty + SEPARATOR + eventId;
+    }
+
+    /**
+     * Checks whether a text is a valid faculty code: 1 to 12 upper-case letters or digits.
+     */
+    static boolean isCode(String code) {
+        if (code.isEmpty() || code.length() > MAX_CODE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (!(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
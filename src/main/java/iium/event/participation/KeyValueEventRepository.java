@@ -0,0 +1,125 @@
+package iium.event.participation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores events as rows of a {@link KeyValueStore}: one row with the event fields and one
+ * with the participant list. A registration commits only the two rows of that event, and
+ * participant lists are read from the store on first access.
+ */
+public class KeyValueEventRepository implements EventRepository {
+    private static final String KEY_PREFIX = "event/";
+    private static final String PARTICIPANTS_PREFIX = "participants/";
+
+    private final KeyValueStore store;
+
+    public KeyValueEventRepository(KeyValueStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Event> loadAll() {
+        List<Event> events = new ArrayList<>();
+        try {
+            for (String key : store.keys(KEY_PREFIX)) {
+                Event event = Event.fromFileString(store.get(key));
+                if (event == null) {
+                    continue;
+                }
+                // Rows written before participant lists had their own rows still carry the list
+                if (store.containsKey(PARTICIPANTS_PREFIX + event.getId())) {
+                    event.setParticipantLoader(this::loadParticipants);
+                }
+                events.add(event);
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading events: " + e.getMessage());
+        }
+        return events;
+    }
+
+    private IntSet loadParticipants(String eventId) throws IOException {
+        String participants = store.get(PARTICIPANTS_PREFIX + eventId);
+        return participants == null ? new IntSet() : Event.parseParticipants(participants);
+    }
+
+    @Override
+    public void save(Event event) {
+        KeyValueStore.Transaction transaction = store.begin();
+        put(transaction, event);
+        try {
+            transaction.commit();
+            stored(event);
+        } catch (IOException e) {
+            System.err.println("Error saving event " + event.getId() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(String eventId) {
+        try {
+            store.begin()
+                .delete(KEY_PREFIX + eventId)
+                .delete(PARTICIPANTS_PREFIX + eventId)
+                .commit();
+        } catch (IOException e) {
+            System.err.println("Error deleting event " + eventId + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> eventIds) {
+        KeyValueStore.Transaction transaction = store.begin();
+        for (String eventId : eventIds) {
+            transaction.delete(KEY_PREFIX + eventId).delete(PARTICIPANTS_PREFIX + eventId);
+        }
+        try {
+            transaction.commit();
+        } catch (IOException e) {
+            System.err.println("Error deleting events: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void saveAll(List<Event> events) {
+        KeyValueStore.Transaction transaction = store.begin();
+        Set<String> keep = new HashSet<>();
+        for (Event event : events) {
+            keep.add(event.getId());
+            put(transaction, event);
+        }
+        for (String key : store.keys(KEY_PREFIX)) {
+            String eventId = key.substring(KEY_PREFIX.length());
+            if (!keep.contains(eventId)) {
+                transaction.delete(key).delete(PARTICIPANTS_PREFIX + eventId);
+            }
+        }
+        try {
+            transaction.commit();
+            events.forEach(this::stored);
+        } catch (IOException e) {
+            System.err.println("Error saving events: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the rows of an event to a transaction. The participant row is only written
+     * when the list has changed since it was last stored.
+     */
+    private void put(KeyValueStore.Transaction transaction, Event event) {
+        transaction.put(KEY_PREFIX + event.getId(), event.toMetadataString());
+        if (event.hasUnsavedParticipants() || !store.containsKey(PARTICIPANTS_PREFIX + event.getId())) {
+            transaction.put(PARTICIPANTS_PREFIX + event.getId(), event.toParticipantsString());
+        }
+    }
+
+    private void stored(Event event) {
+        event.setParticipantLoader(this::loadParticipants);
+        event.markParticipantsStored();
+    }
+}
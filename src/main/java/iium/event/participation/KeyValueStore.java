@@ -0,0 +1,311 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded, file-backed key-value store with transactions.
+ * All changes are appended to one log file as batches of puts and deletes that end with a
+ * commit record holding a CRC. A batch only counts once its commit record is on disk, so a
+ * crash mid-write loses at most the unfinished transaction; the torn tail is cut off on open.
+ * Keys are indexed in memory with the file position of their current value, so a lookup is one
+ * positional read and an update appends only the changed rows.
+ */
+public class KeyValueStore implements Closeable {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte COMMIT = 3;
+    private static final long COMPACT_MIN_BYTES = 1 << 20;
+
+    private final Path path;
+    private final Map<String, long[]> index = new LinkedHashMap<>(); // key -> {value offset, value length, record length}
+    private FileChannel channel;
+    private long end;
+    private long liveBytes;
+
+    private KeyValueStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Opens the store, creating the file if it does not exist yet.
+     * @param path The log file
+     * @return The opened store
+     * @throws IOException If the file cannot be read or repaired
+     */
+    public static KeyValueStore open(Path path) throws IOException {
+        KeyValueStore store = new KeyValueStore(path);
+        store.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        store.replay();
+        return store;
+    }
+
+    /**
+     * Gets the current value of a key.
+     * @return The value, or null if the key is not present
+     */
+    public synchronized String get(String key) throws IOException {
+        long[] location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) location[1]);
+        long position = location[0];
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Value of " + key + " is past the end of " + path);
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    public synchronized boolean containsKey(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Gets the keys starting with the given prefix, in the order they were first written.
+     */
+    public synchronized List<String> keys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        for (String key : index.keySet()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Starts a transaction. Nothing is visible or written until {@link Transaction#commit()}.
+     */
+    public Transaction begin() {
+        return new Transaction();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A batch of changes applied atomically by {@link #commit()}.
+     */
+    public class Transaction {
+        private final Map<String, String> changes = new LinkedHashMap<>(); // null value = delete
+
+        public Transaction put(String key, String value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        public Transaction delete(String key) {
+            changes.put(key, null);
+            return this;
+        }
+
+        /**
+         * Appends the batch and its commit record, forces them to disk, then updates the index.
+         * @throws IOException If the batch could not be written; the store is left unchanged
+         */
+        public void commit() throws IOException {
+            if (changes.isEmpty()) {
+                return;
+            }
+            synchronized (KeyValueStore.this) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                // {key offset in batch, value offset in batch, value length, record length}
+                Map<String, int[]> positions = new LinkedHashMap<>();
+                for (Map.Entry<String, String> change : changes.entrySet()) {
+                    int start = out.size();
+                    byte[] key = change.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(change.getValue() == null ? DELETE : PUT);
+                    out.writeInt(key.length);
+                    out.write(key);
+                    if (change.getValue() != null) {
+                        byte[] value = change.getValue().getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(value.length);
+                        out.write(value);
+                        positions.put(change.getKey(), new int[] {out.size() - value.length, value.length, out.size() - start});
+                    } else {
+                        positions.put(change.getKey(), null);
+                    }
+                }
+                CRC32 crc = new CRC32();
+                crc.update(bytes.toByteArray());
+                out.writeByte(COMMIT);
+                out.writeLong(crc.getValue());
+                out.flush();
+
+                writeFully(ByteBuffer.wrap(bytes.toByteArray()), end);
+                channel.force(false);
+
+                long batchStart = end;
+                end += bytes.size();
+                for (Map.Entry<String, int[]> position : positions.entrySet()) {
+                    int[] value = position.getValue();
+                    if (value == null) {
+                        removeFromIndex(position.getKey());
+                    } else {
+                        putInIndex(position.getKey(), batchStart + value[0], value[1], value[2]);
+                    }
+                }
+                changes.clear();
+                try {
+                    compactIfNeeded();
+                } catch (IOException e) {
+                    // The batch is already on disk; the old log stays in use until the next attempt
+                    System.err.println("Error compacting " + path + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void putInIndex(String key, long offset, long length, long recordLength) {
+        long[] previous = index.put(key, new long[] {offset, length, recordLength});
+        if (previous != null) {
+            liveBytes -= previous[2];
+        }
+        liveBytes += recordLength;
+    }
+
+    private void removeFromIndex(String key) {
+        long[] previous = index.remove(key);
+        if (previous != null) {
+            liveBytes -= previous[2];
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Rebuilds the index from the log and truncates anything after the last valid commit.
+     */
+    private void replay() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long committed = 0;
+        List<Object[]> pending = new ArrayList<>(); // {key, offset, length, record length} or {key} for deletes
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (position < size) {
+                byte type = in.readByte();
+                if (type == COMMIT) {
+                    long expected = in.readLong();
+                    position += 9;
+                    if (expected != crc.getValue()) {
+                        break;
+                    }
+                    for (Object[] op : pending) {
+                        if (op.length == 1) {
+                            removeFromIndex((String) op[0]);
+                        } else {
+                            putInIndex((String) op[0], (Long) op[1], (Integer) op[2], (Integer) op[3]);
+                        }
+                    }
+                    pending.clear();
+                    crc.reset();
+                    committed = position;
+                    continue;
+                }
+                if (type != PUT && type != DELETE) {
+                    break;
+                }
+                long start = position;
+                int keyLength = in.readInt();
+                if (keyLength < 0 || keyLength > size - position) {
+                    break;
+                }
+                byte[] key = new byte[keyLength];
+                in.readFully(key);
+                crc.update(type);
+                updateInt(crc, keyLength);
+                crc.update(key);
+                position += 5 + keyLength;
+                if (type == DELETE) {
+                    pending.add(new Object[] {new String(key, StandardCharsets.UTF_8)});
+                    continue;
+                }
+                int valueLength = in.readInt();
+                if (valueLength < 0 || valueLength > size - position) {
+                    break;
+                }
+                byte[] value = new byte[valueLength];
+                in.readFully(value);
+                updateInt(crc, valueLength);
+                crc.update(value);
+                position += 4 + valueLength;
+                pending.add(new Object[] {new String(key, StandardCharsets.UTF_8), position - valueLength, valueLength, (int) (position - start)});
+            }
+        } catch (EOFException e) {
+            // Torn write at the end of the log, handled below
+        }
+        if (committed < size) {
+            System.err.println("Discarding " + (size - committed) + " bytes of uncommitted data in " + path);
+            channel.truncate(committed);
+            channel.force(false);
+        }
+        end = committed;
+    }
+
+    private static void updateInt(CRC32 crc, int value) {
+        crc.update(value >>> 24);
+        crc.update(value >>> 16);
+        crc.update(value >>> 8);
+        crc.update(value);
+    }
+
+    /**
+     * Rewrites the live rows into a fresh log once most of the file is superseded data.
+     * The old channel is only closed once the fresh log has replaced the file, so if any step
+     * fails the store keeps reading and appending to the old log.
+     */
+    private void compactIfNeeded() throws IOException {
+        if (end < COMPACT_MIN_BYTES || liveBytes * 2 > end) {
+            return;
+        }
+        Map<String, String> live = new LinkedHashMap<>();
+        for (String key : index.keySet()) {
+            live.put(key, get(key));
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(temp);
+        KeyValueStore compacted = open(temp);
+        try {
+            Transaction transaction = compacted.begin();
+            live.forEach(transaction::put);
+            transaction.commit();
+            // The compacted channel stays open and follows the file to its new name
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            compacted.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        FileChannel previous = channel;
+        channel = compacted.channel;
+        index.clear();
+        index.putAll(compacted.index);
+        liveBytes = compacted.liveBytes;
+        end = compacted.end;
+        previous.close();
+    }
+}
@@ -0,0 +1,65 @@
+package iium.event.participation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores users as rows of a {@link KeyValueStore}, one key per username.
+ */
+public class KeyValueUserRepository implements UserRepository {
+    private static final String KEY_PREFIX = "user/";
+
+    private final KeyValueStore store;
+
+    public KeyValueUserRepository(KeyValueStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<User> loadAll() {
+        List<User> users = new ArrayList<>();
+        try {
+            for (String key : store.keys(KEY_PREFIX)) {
+                User user = User.fromFileString(store.get(key));
+                if (user != null) {
+                    users.add(user);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading users: " + e.getMessage());
+        }
+        return users;
+    }
+
+    @Override
+    public void save(User user) {
+        try {
+            store.begin().put(KEY_PREFIX + user.getUsername(), user.toFileString()).commit();
+        } catch (IOException e) {
+            System.err.println("Error saving user " + user.getUsername() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void saveAll(List<User> users) {
+        KeyValueStore.Transaction transaction = store.begin();
+        Set<String> keep = new HashSet<>();
+        for (User user : users) {
+            keep.add(KEY_PREFIX + user.getUsername());
+            transaction.put(KEY_PREFIX + user.getUsername(), user.toFileString());
+        }
+        for (String key : store.keys(KEY_PREFIX)) {
+            if (!keep.contains(key)) {
+                transaction.delete(key);
+            }
+        }
+        try {
+            transaction.commit();
+        } catch (IOException e) {
+            System.err.println("Error saving users: " + e.getMessage());
+        }
+    }
+}
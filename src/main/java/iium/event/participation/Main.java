@@ -2,6 +2,11 @@ package iium.event.participation;
 
 import javafx.application.Application;
 import javafx.stage.Stage;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Main application class for the Event Participation System.
@@ -14,20 +19,62 @@ public class Main extends Application {
     @Override
     public void start(Stage primaryStage) {
         try {
-            userManager = UserManager.getInstance();
-            eventManager = EventManager.getInstance();
+            // Load users and events in the background so the login screen shows immediately
+            ExecutorService loader = Executors.newFixedThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable, "data-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            userManager = UserManager.loadInBackground(loader);
+            eventManager = EventManager.loadInBackground(loader);
+            loader.shutdown();
+            ChangeLog changeLog = ChangeLog.getInstance();
+            if (changeLog.isEnabled()) {
+                if ("kv".equalsIgnoreCase(System.getProperty("iium.storage"))) {
+                    System.err.println("WARNING: iium.shared does not support the kv storage, use text or segmented");
+                }
+                userManager.whenLoaded().thenCombine(eventManager.whenLoaded(), (users, events) -> null)
+                    .thenRun(changeLog::startWatching);
+            }
+            if (ReplicationServer.isEnabled()) {
+                eventManager.whenLoaded().thenRun(() -> {
+                    try {
+                        ReplicationServer.start(eventManager);
+                    } catch (IOException e) {
+                        System.err.println("Error starting replication server: " + e.getMessage());
+                    }
+                });
+            }
+            if (Boolean.getBoolean("iium.footprint")) {
+                userManager.whenLoaded().thenCombine(eventManager.whenLoaded(), (users, events) -> null)
+                    .thenRun(() -> System.out.println(StringDictionary.getInstance().footprintReport()));
+            }
             
             // Initialize the login screen
             EventAppFX app = new EventAppFX(primaryStage, userManager, eventManager);
             primaryStage.setTitle("IIUM Event Participation System");
             primaryStage.setScene(app.createLoginScene());
             primaryStage.show();
+            if (Boolean.getBoolean("iium.startupTiming")) {
+                reportStartupTime();
+            }
+            if (TrainingRun.isEnabled()) {
+                TrainingRun.start(primaryStage, userManager, eventManager);
+            }
         } catch (Exception e) {
             e.printStackTrace();
             showError("Failed to start application: " + e.getMessage());
         }
     }
 
+    /**
+     * Prints how long the process took to get the login screen on screen, for comparing launchers.
+     */
+    private static void reportStartupTime() {
+        ProcessHandle.current().info().startInstant().ifPresent(start -> System.out.println(
+            "Login screen shown after " + Duration.between(start, Instant.now()).toMillis() + " ms"));
+    }
+
     private static void showError(String message) {
         System.err.println("ERROR: " + message);
         javafx.application.Platform.runLater(() -> {
@@ -0,0 +1,204 @@
+package iium.event.participation;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells registered students when an event they joined is moved or cancelled.
+ * {@link EventManager} prepares a {@link Notice} with a copy of the participant IDs while it
+ * holds its lock and submits it afterwards, so an admin edit only waits for the copy, not for
+ * thousands of deliveries. The notices then pass through two bounded queues:
+ * <ul>
+ * <li>The "notification-dispatcher" thread takes notices, waiting {@link #LINGER_MILLIS} for
+ * more, and groups their messages by recipient, so a student affected by several changes in
+ * a row gets them in one delivery.</li>
+ * <li>The "notification-sender" thread hands each recipient's messages to the
+ * {@link NotificationSink}, by default an {@link OutboxNotificationSink} writing
+ * notifications-outbox.txt.</li>
+ * </ul>
+ * When the sink falls behind, the dispatcher waits for room in the delivery queue and
+ * {@link #submit(Notice)} waits for room in the notice queue, up to {@link #SUBMIT_TIMEOUT_MILLIS}.
+ * Notices still queued when the app exits are not delivered.
+ */
+public final class NotificationService {
+    static final int NOTICE_QUEUE_CAPACITY = 256;
+    static final int DELIVERY_QUEUE_CAPACITY = 1024;
+    static final long LINGER_MILLIS = 200;
+    static final int MAX_NOTICES_PER_BATCH = 64; // Delivers a batch even while notices keep arriving
+    static final long SUBMIT_TIMEOUT_MILLIS = 5000;
+    private static NotificationService instance;
+
+    private final BlockingQueue<Notice> notices = new ArrayBlockingQueue<>(NOTICE_QUEUE_CAPACITY);
+    private final BlockingQueue<Delivery> deliveries = new ArrayBlockingQueue<>(DELIVERY_QUEUE_CAPACITY);
+    private volatile NotificationSink sink = new OutboxNotificationSink(Paths.get("notifications-outbox.txt"));
+    private Thread dispatcher;
+
+    private NotificationService() {
+    }
+
+    public static synchronized NotificationService getInstance() {
+        if (instance == null) {
+            instance = new NotificationService();
+        }
+        return instance;
+    }
+
+    /**
+     * A message to the participants of an event, with their IDs copied when it was prepared.
+     */
+    public static final class Notice {
+        private final String message;
+        private final IntSet recipients;
+
+        public Notice(String message, IntSet recipients) {
+            this.message = message;
+            this.recipients = recipients;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public IntSet getRecipients() {
+            return recipients;
+        }
+    }
+
+    private static final class Delivery {
+        private final String username;
+        private final List<String> messages;
+
+        private Delivery(String username, List<String> messages) {
+            this.username = username;
+            this.messages = messages;
+        }
+    }
+
+    /**
+     * Prepares the notice for an edit that moved an event to another time or place.
+     * @param before A copy of the details before the edit, see {@link Event#copyDetails()}
+     * @param after The edited event
+     * @return The notice, or null if the time and place are unchanged or nobody is registered
+     */
+    public static Notice changeNotice(Event before, Event after) {
+        List<String> changes = new ArrayList<>(2);
+        if (!Objects.equals(before.getDate(), after.getDate()) || !Objects.equals(before.getEndDate(), after.getEndDate())) {
+            changes.add("now takes place on " + after.getDate() + (after.getEndDate() != null ? " until " + after.getEndDate() : ""));
+        }
+        if (!Objects.equals(before.getLocation(), after.getLocation())) {
+            changes.add("has moved from " + before.getLocation() + " to " + after.getLocation());
+        }
+        if (changes.isEmpty() || after.getRegisteredCount() == 0) {
+            return null;
+        }
+        return new Notice("\"" + after.getTitle() + "\" (" + after.getId() + ") " + String.join(" and ", changes) + ".",
+            after.getParticipantIds());
+    }
+
+    /**
+     * Prepares the notice for a deleted event.
+     * @return The notice, or null if nobody is registered
+     */
+    public static Notice cancellationNotice(Event event) {
+        if (event.getRegisteredCount() == 0) {
+            return null;
+        }
+        return new Notice("\"" + event.getTitle() + "\" (" + event.getId() + ") on " + event.getDate() + " has been cancelled.",
+            event.getParticipantIds());
+    }
+
+    /**
+     * Replaces the sink, e.g. to send e-mail instead of writing the outbox file.
+     * Deliveries already taken by the sender still go to the old sink.
+     */
+    public void setSink(NotificationSink sink) {
+        this.sink = Objects.requireNonNull(sink);
+    }
+
+    /**
+     * Queues a notice for delivery. Must not be called while holding the EventManager lock,
+     * since it waits when the queue is full.
+     * @param notice The notice, or null for nothing to send
+     * @return false if the queue stayed full for {@link #SUBMIT_TIMEOUT_MILLIS} and the notice was dropped
+     */
+    public boolean submit(Notice notice) {
+        if (notice == null || notice.recipients.isEmpty()) {
+            return true;
+        }
+        startWorkers();
+        try {
+            if (notices.offer(notice, SUBMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.err.println("Notification queue full, dropped: " + notice.message);
+        return false;
+    }
+
+    /**
+     * Gets the number of notices and deliveries waiting, for monitoring.
+     */
+    public int getBacklog() {
+        return notices.size() + deliveries.size();
+    }
+
+    private synchronized void startWorkers() {
+        if (dispatcher != null) {
+            return;
+        }
+        dispatcher = new Thread(this::dispatch, "notification-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        Thread sender = new Thread(this::send, "notification-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    private void dispatch() {
+        UserIdRegistry registry = UserIdRegistry.getInstance();
+        Map<Integer, List<String>> byRecipient = new LinkedHashMap<>();
+        try {
+            while (true) {
+                Notice notice = notices.take();
+                int batched = 0;
+                do {
+                    String message = notice.message;
+                    notice.recipients.forEach(userId -> byRecipient.computeIfAbsent(userId, id -> new ArrayList<>(2)).add(message));
+                    batched++;
+                } while (batched < MAX_NOTICES_PER_BATCH && (notice = notices.poll(LINGER_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                for (Map.Entry<Integer, List<String>> entry : byRecipient.entrySet()) {
+                    // Waits while the sink is behind
+                    deliveries.put(new Delivery(registry.usernameOf(entry.getKey()), entry.getValue()));
+                }
+                byRecipient.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send() {
+        try {
+            while (true) {
+                Delivery delivery = deliveries.take();
+                NotificationSink target = sink;
+                try {
+                    target.deliver(delivery.username, delivery.messages);
+                    if (deliveries.isEmpty()) {
+                        target.flush();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Error delivering notification to " + delivery.username + ": " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
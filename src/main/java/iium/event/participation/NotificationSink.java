@@ -0,0 +1,23 @@
+package iium.event.participation;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Delivers notifications to users, e.g. by e-mail. Used by {@link NotificationService}, which
+ * calls it from one thread and gives each recipient all messages waiting for them at once.
+ */
+public interface NotificationSink {
+    /**
+     * Delivers messages to one user.
+     * @param username The recipient
+     * @param messages The messages, oldest first
+     */
+    void deliver(String username, List<String> messages) throws IOException;
+
+    /**
+     * Completes the deliveries made so far, called when no more are waiting.
+     */
+    default void flush() throws IOException {
+    }
+}
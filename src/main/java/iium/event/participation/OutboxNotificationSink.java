@@ -0,0 +1,48 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes notifications to a local outbox file instead of sending them, for testing and for
+ * booths without mail access. Each delivery is one line: the time, the recipient and their
+ * messages, as comma-separated fields quoted where needed, see {@link RecordTokenizer}.
+ */
+public class OutboxNotificationSink implements NotificationSink {
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Path path;
+    private Writer writer; // Opened on the first delivery
+
+    public OutboxNotificationSink(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public synchronized void deliver(String username, List<String> messages) throws IOException {
+        if (writer == null) {
+            writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND), StandardCharsets.UTF_8), 1 << 16);
+        }
+        StringBuilder line = new StringBuilder(64)
+            .append(LocalDateTime.now().format(TIME)).append(',')
+            .append(RecordTokenizer.quote(username));
+        for (String message : messages) {
+            line.append(',').append(RecordTokenizer.quote(message));
+        }
+        writer.write(line.append('\n').toString());
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+}
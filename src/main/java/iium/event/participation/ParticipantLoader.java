@@ -0,0 +1,17 @@
+package iium.event.participation;
+
+import java.io.IOException;
+
+/**
+ * Reads the participant list of an event from storage on first access.
+ * Repositories attach one to the events they load so that startup only reads event metadata.
+ */
+@FunctionalInterface
+public interface ParticipantLoader {
+    /**
+     * @param eventId The ID of the event
+     * @return The participant IDs, see {@link UserIdRegistry}
+     * @throws IOException If the stored list cannot be read
+     */
+    IntSet load(String eventId) throws IOException;
+}
@@ -0,0 +1,132 @@
+package iium.event.participation;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Stores each faculty's events in its own text file, see {@link Faculty}: General events in
+ * events.txt and the others in events-&lt;code&gt;.txt, e.g. events-kict.txt. A change only
+ * rewrites the file of the event's faculty, under that file's own lock, and the files are read
+ * in parallel on loading.
+ * Events found in another faculty's file, e.g. after restoring a backup's events.txt, are
+ * moved to their own file on loading.
+ */
+public class PartitionedEventRepository implements EventRepository {
+    private static final String PARTITION_PREFIX = "events-";
+    private static final String PARTITION_SUFFIX = ".txt";
+
+    private final Path directory;
+    private final String generalFile;
+    private final Map<String, TextEventRepository> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory The directory holding the files
+     * @param generalFile The file name of the General faculty, e.g. events.txt
+     */
+    public PartitionedEventRepository(Path directory, String generalFile) {
+        this.directory = directory;
+        this.generalFile = generalFile;
+    }
+
+    private TextEventRepository partition(String faculty) {
+        return partitions.computeIfAbsent(faculty, key -> new TextEventRepository(directory.resolve(
+            Faculty.GENERAL.equals(key) ? generalFile : PARTITION_PREFIX + key.toLowerCase() + PARTITION_SUFFIX).toString()));
+    }
+
+    @Override
+    public List<Event> loadAll() {
+        Set<String> faculties = new LinkedHashSet<>();
+        faculties.add(Faculty.GENERAL);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PARTITION_PREFIX + "*" + PARTITION_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String code = name.substring(PARTITION_PREFIX.length(), name.length() - PARTITION_SUFFIX.length()).toUpperCase();
+                if (Faculty.isCode(code)) {
+                    faculties.add(code);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing event files: " + e.getMessage());
+        }
+        List<String> order = new ArrayList<>(faculties);
+        List<List<Event>> loaded = order.parallelStream()
+            .map(faculty -> partition(faculty).loadAll())
+            .collect(Collectors.toList());
+        List<Event> events = new ArrayList<>();
+        Map<String, List<Event>> byFaculty = new LinkedHashMap<>();
+        Set<String> sources = new LinkedHashSet<>();
+        Set<String> targets = new LinkedHashSet<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < order.size(); i++) {
+            for (Event event : loaded.get(i)) {
+                if (!seen.add(event.getId())) {
+                    sources.add(order.get(i)); // The copy in events.txt or the earlier file wins
+                    continue;
+                }
+                String faculty = Faculty.of(event.getId());
+                events.add(event);
+                byFaculty.computeIfAbsent(faculty, key -> new ArrayList<>()).add(event);
+                if (!faculty.equals(order.get(i))) {
+                    sources.add(order.get(i));
+                    targets.add(faculty);
+                }
+            }
+        }
+        // Written before the files they came from, whose bytes hold their participant lists
+        for (String faculty : targets) {
+            partition(faculty).saveAll(byFaculty.get(faculty));
+        }
+        sources.removeAll(targets);
+        for (String faculty : sources) {
+            partition(faculty).saveAll(byFaculty.getOrDefault(faculty, Collections.emptyList()));
+        }
+        return events;
+    }
+
+    @Override
+    public void save(Event event) {
+        partition(Faculty.of(event.getId())).save(event);
+    }
+
+    @Override
+    public void delete(String eventId) {
+        partition(Faculty.of(eventId)).delete(eventId);
+    }
+
+    @Override
+    public void deleteAll(Collection<String> eventIds) {
+        Map<String, List<String>> byFaculty = new HashMap<>();
+        for (String eventId : eventIds) {
+            byFaculty.computeIfAbsent(Faculty.of(eventId), faculty -> new ArrayList<>()).add(eventId);
+        }
+        byFaculty.forEach((faculty, ids) -> partition(faculty).deleteAll(ids));
+    }
+
+    @Override
+    public void saveAll(List<Event> events) {
+        Map<String, List<Event>> byFaculty = new HashMap<>();
+        for (String faculty : partitions.keySet()) {
+            byFaculty.put(faculty, new ArrayList<>()); // Emptied partitions are rewritten too
+        }
+        for (Event event : events) {
+            byFaculty.computeIfAbsent(Faculty.of(event.getId()), faculty -> new ArrayList<>()).add(event);
+        }
+        byFaculty.entrySet().parallelStream()
+            .forEach(entry -> partition(entry.getKey()).saveAll(entry.getValue()));
+    }
+
+    @Override
+    public void storedElsewhere(Event event) {
+        partition(Faculty.of(event.getId())).storedElsewhere(event);
+    }
+
+    @Override
+    public void deletedElsewhere(String eventId) {
+        partition(Faculty.of(eventId)).deletedElsewhere(eventId);
+    }
+}
@@ -0,0 +1,145 @@
+package iium.event.participation;
+
+import java.util.*;
+
+/**
+ * Type-ahead index from texts to the keys of the records they belong to, e.g. event titles and
+ * locations to event IDs. Each text is lower-cased and indexed from the start of every word,
+ * so "aud" and "main aud" both find "Main Auditorium". The terms are kept sorted, so the
+ * matches of a prefix are found with one O(log n) lookup and read in order until the limit is
+ * reached, independent of how many records there are.
+ * Records are added, changed and removed one at a time by their owner. Thread-safe.
+ */
+public class PrefixIndex {
+    private static final int MAX_WORDS = 16; // Words of a text indexed, enough for titles and names
+
+    // Term -> the one key with that term, or a Set of keys; most terms belong to a single record
+    private final NavigableMap<String, Object> keysByTerm = new TreeMap<>();
+    private final Map<String, List<String>> termsByKey = new HashMap<>();
+
+    /**
+     * Indexes a record's texts, replacing the ones indexed for it before.
+     * @param key The record's key
+     * @param texts Its searchable texts; null ones are skipped
+     */
+    public synchronized void put(String key, String... texts) {
+        remove(key);
+        List<String> terms = new ArrayList<>();
+        for (String text : texts) {
+            String normalized = normalize(text);
+            int words = 0;
+            for (int start = 0; start < normalized.length() && words < MAX_WORDS; words++) {
+                terms.add(normalized.substring(start));
+                int space = normalized.indexOf(' ', start);
+                if (space < 0) {
+                    break;
+                }
+                start = space + 1;
+            }
+        }
+        for (String term : terms) {
+            keysByTerm.merge(term, key, PrefixIndex::addKey);
+        }
+        termsByKey.put(key, terms);
+    }
+
+    public synchronized void remove(String key) {
+        List<String> terms = termsByKey.remove(key);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Object keys = keysByTerm.get(term);
+            if (key.equals(keys)) {
+                keysByTerm.remove(term);
+            } else if (keys instanceof Set) {
+                Set<?> set = (Set<?>) keys;
+                set.remove(key);
+                if (set.size() == 1) {
+                    keysByTerm.put(term, set.iterator().next());
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object addKey(Object keys, Object key) {
+        if (keys.equals(key)) {
+            return keys;
+        }
+        if (keys instanceof Set) {
+            ((Set<Object>) keys).add(key);
+            return keys;
+        }
+        Set<Object> set = new HashSet<>(4);
+        set.add(keys);
+        set.add(key);
+        return set;
+    }
+
+    public synchronized void clear() {
+        keysByTerm.clear();
+        termsByKey.clear();
+    }
+
+    /**
+     * Finds the records with a text or word starting with the prefix, ignoring case.
+     * @param prefix What has been typed so far
+     * @param limit The most keys to return
+     * @return The keys, shortest and alphabetically first matching text first; empty for a blank prefix
+     */
+    public synchronized List<String> complete(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        Set<String> found = new LinkedHashSet<>();
+        if (normalized.isEmpty()) {
+            return new ArrayList<>();
+        }
+        for (Map.Entry<String, Object> entry : keysByTerm.tailMap(normalized, true).entrySet()) {
+            if (found.size() >= limit || !entry.getKey().startsWith(normalized)) {
+                break;
+            }
+            if (entry.getValue() instanceof String) {
+                found.add((String) entry.getValue());
+                continue;
+            }
+            for (Object key : (Set<?>) entry.getValue()) {
+                found.add((String) key);
+                if (found.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Gets the number of records indexed.
+     */
+    public synchronized int size() {
+        return termsByKey.size();
+    }
+
+    /**
+     * Lower-cases a text and turns each run of whitespace into one space.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+}
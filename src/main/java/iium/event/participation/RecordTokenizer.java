@@ -0,0 +1,281 @@
+package iium.event.participation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Reads the comma-separated fields of one stored line straight from its UTF-8 bytes, used by
+ * the event and user loaders instead of String.split.
+ * Numbers are parsed from the bytes without creating a string, and a text field becomes one
+ * string with no intermediate array. One tokenizer can be {@link #reset} for every line of a file.
+ * A field holding a comma or line break, or starting with a quote, is written by
+ * {@link #quote(String)} in double quotes, with "" for a quote and \\, \n and \r for a
+ * backslash and line breaks. All other fields are stored as they are; quotes and backslashes
+ * inside them have no special meaning.
+ * Files of lines that may hold quoted fields, events.txt, the event segments and users.txt,
+ * start with the {@link #HEADER} line. Files without it were written before quoting existed,
+ * and are read with {@link #setQuoting(boolean)} off, so a legacy title like "Big" Night keeps
+ * its quotes. Lines kept anywhere else, e.g. in the change log, were always written with quoting.
+ */
+public final class RecordTokenizer {
+    /**
+     * First line of a file whose fields may be quoted. Older versions of the app skip it as a
+     * line with too few fields.
+     */
+    public static final String HEADER = "#iium-records 2";
+    private static final byte[] HEADER_BYTES = HEADER.getBytes(StandardCharsets.UTF_8);
+
+    private byte[] bytes;
+    private int position;
+    private int end;
+    private boolean done; // No field left, not even an empty one after a trailing comma
+    private boolean quoting = true;
+
+    public RecordTokenizer() {
+        reset(new byte[0], 0, 0);
+    }
+
+    public RecordTokenizer(byte[] bytes, int offset, int end) {
+        reset(bytes, offset, end);
+    }
+
+    /**
+     * Creates a tokenizer for a line held as a string, e.g. a change log entry.
+     */
+    public static RecordTokenizer of(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return new RecordTokenizer(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads a file's lines in chunks, calling the action with one tokenizer reset to each
+     * non-empty line. The action must not keep the tokenizer. A {@link #HEADER} first line is
+     * skipped; without it the file predates quoting and its fields are read as they are.
+     */
+    public static void forEachLine(InputStream in, Consumer<RecordTokenizer> action) throws IOException {
+        RecordTokenizer fields = new RecordTokenizer();
+        boolean firstLine = true;
+        byte[] buffer = new byte[1 << 16];
+        int start = 0; // Start of the current line
+        int length = 0; // Bytes in the buffer
+        int scan = 0; // Where to look for the next line break
+        boolean end = false;
+        while (true) {
+            while (scan < length && buffer[scan] != '\n') {
+                scan++;
+            }
+            if (scan == length && !end) {
+                // Move the incomplete line to the front and read more
+                System.arraycopy(buffer, start, buffer, 0, length - start);
+                length -= start;
+                scan -= start;
+                start = 0;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = in.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    end = true;
+                } else {
+                    length += read;
+                }
+                continue;
+            }
+            int lineEnd = scan > start && buffer[scan - 1] == '\r' ? scan - 1 : scan;
+            boolean header = firstLine && isHeader(buffer, start, lineEnd);
+            if (firstLine) {
+                fields.setQuoting(header);
+                firstLine = false;
+            }
+            if (lineEnd > start && !header) {
+                fields.reset(buffer, start, lineEnd);
+                action.accept(fields);
+            }
+            if (scan == length) {
+                return;
+            }
+            start = ++scan;
+        }
+    }
+
+    /**
+     * Starts reading another line.
+     * @param bytes The buffer holding the line
+     * @param offset The index of the first byte of the line
+     * @param end The index after the last byte, without the line break
+     */
+    public void reset(byte[] bytes, int offset, int end) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.end = end;
+        this.done = false;
+    }
+
+    /**
+     * Checks whether a line is the {@link #HEADER}.
+     * @param end The index after the last byte, without the line break
+     */
+    public static boolean isHeader(byte[] bytes, int offset, int end) {
+        return Arrays.equals(bytes, offset, end, HEADER_BYTES, 0, HEADER_BYTES.length);
+    }
+
+    /**
+     * Sets whether fields starting with a quote are read as quoted, the default, or as they are,
+     * for lines written before quoting existed. Kept when the tokenizer is reset.
+     */
+    public void setQuoting(boolean quoting) {
+        this.quoting = quoting;
+    }
+
+    /**
+     * Checks whether another field follows. Like split(",", -1), an empty line has one empty
+     * field and a trailing comma is followed by an empty field.
+     */
+    public boolean hasNext() {
+        return !done;
+    }
+
+    /**
+     * Reads the next field as text.
+     * @throws IllegalStateException If there is no field left
+     */
+    public String next() {
+        checkHasNext();
+        if (quoting && position < end && bytes[position] == '"') {
+            return nextQuoted();
+        }
+        int start = position;
+        int comma = indexOfComma(start);
+        position = comma + 1;
+        done = comma == end;
+        return new String(bytes, start, comma - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next field as a decimal int, without creating a string.
+     * @throws NumberFormatException If the field is not a number
+     */
+    public int nextInt() {
+        checkHasNext();
+        int comma = indexOfComma(position);
+        int i = position;
+        boolean negative = i < comma && bytes[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == comma) {
+            throw new NumberFormatException("Empty number field");
+        }
+        long value = 0;
+        for (; i < comma; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: " + new String(bytes, position, comma - position, StandardCharsets.UTF_8));
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("Number too large");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Number too large");
+        }
+        position = comma + 1;
+        done = comma == end;
+        return (int) value;
+    }
+
+    /**
+     * Skips the next field.
+     */
+    public void skip() {
+        checkHasNext();
+        if (quoting && position < end && bytes[position] == '"') {
+            nextQuoted();
+            return;
+        }
+        int comma = indexOfComma(position);
+        position = comma + 1;
+        done = comma == end;
+    }
+
+    private String nextQuoted() {
+        StringBuilder text = null;
+        int i = position + 1;
+        int runStart = i; // Start of the bytes not yet copied into text
+        while (i < end) {
+            byte b = bytes[i];
+            if (b == '"' && (i + 1 >= end || bytes[i + 1] != '"')) {
+                break;
+            }
+            if (b == '"' || b == '\\') {
+                if (text == null) {
+                    text = new StringBuilder(end - position);
+                }
+                text.append(new String(bytes, runStart, i - runStart, StandardCharsets.UTF_8));
+                byte next = i + 1 < end ? bytes[i + 1] : (byte) '\\';
+                text.append(b == '"' ? '"' : next == 'n' ? '\n' : next == 'r' ? '\r' : (char) next);
+                i += 2;
+                runStart = i;
+            } else {
+                i++;
+            }
+        }
+        String last = new String(bytes, runStart, Math.min(i, end) - runStart, StandardCharsets.UTF_8);
+        String value = text == null ? last : text.append(last).toString();
+        // Anything between the closing quote and the comma is not expected and dropped
+        int comma = indexOfComma(Math.min(i + 1, end));
+        position = comma + 1;
+        done = comma == end;
+        return value;
+    }
+
+    private int indexOfComma(int from) {
+        for (int i = from; i < end; i++) {
+            if (bytes[i] == ',') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private void checkHasNext() {
+        if (done) {
+            throw new IllegalStateException("No field left");
+        }
+    }
+
+    /**
+     * Formats a field so that {@link #next()} reads it back unchanged.
+     * Fields without special characters are returned as they are.
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        boolean plain = value.isEmpty() || value.charAt(0) != '"';
+        for (int i = 0; plain && i < value.length(); i++) {
+            char c = value.charAt(i);
+            plain = c != ',' && c != '\n' && c != '\r';
+        }
+        if (plain) {
+            return value;
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 8).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\"\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                default: quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,96 @@
+package iium.event.participation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event x student registration matrix kept as one compressed bitmap of user IDs per event.
+ * Maintained by EventManager so reports can use set algebra instead of nested loops.
+ */
+public class RegistrationIndex {
+    private final Map<String, CompressedBitmap> bitmaps = new HashMap<>();
+
+    /**
+     * Replaces the row of an event with its current participants.
+     */
+    public void put(Event event) {
+        bitmaps.put(event.getId(), CompressedBitmap.of(event.getParticipantIds()));
+    }
+
+    public void remove(String eventId) {
+        bitmaps.remove(eventId);
+    }
+
+    public void clear() {
+        bitmaps.clear();
+    }
+
+    public void register(String eventId, int userId) {
+        bitmaps.computeIfAbsent(eventId, id -> new CompressedBitmap()).add(userId);
+    }
+
+    public void unregister(String eventId, int userId) {
+        CompressedBitmap bitmap = bitmaps.get(eventId);
+        if (bitmap != null) {
+            bitmap.remove(userId);
+        }
+    }
+
+    /**
+     * Gets the attendees of one event. The result is a copy and may be modified.
+     */
+    public CompressedBitmap attendees(String eventId) {
+        CompressedBitmap bitmap = bitmaps.get(eventId);
+        return bitmap != null ? bitmap.copy() : new CompressedBitmap();
+    }
+
+    /**
+     * Students registered for both events.
+     */
+    public CompressedBitmap both(String firstEventId, String secondEventId) {
+        return CompressedBitmap.and(row(firstEventId), row(secondEventId));
+    }
+
+    /**
+     * Students registered for either event.
+     */
+    public CompressedBitmap either(String firstEventId, String secondEventId) {
+        return CompressedBitmap.or(row(firstEventId), row(secondEventId));
+    }
+
+    /**
+     * Students registered for the first event but not the second.
+     */
+    public CompressedBitmap firstButNotSecond(String firstEventId, String secondEventId) {
+        return CompressedBitmap.andNot(row(firstEventId), row(secondEventId));
+    }
+
+    /**
+     * Distinct students registered for at least one of the given events.
+     */
+    public CompressedBitmap union(Collection<String> eventIds) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (String eventId : eventIds) {
+            result = CompressedBitmap.or(result, row(eventId));
+        }
+        return result;
+    }
+
+    /**
+     * Converts a bitmap of user IDs back to usernames, for display and export.
+     */
+    public static List<String> toUsernames(CompressedBitmap bitmap) {
+        UserIdRegistry registry = UserIdRegistry.getInstance();
+        List<String> usernames = new ArrayList<>(bitmap.cardinality());
+        bitmap.forEach(userId -> usernames.add(registry.usernameOf(userId)));
+        return usernames;
+    }
+
+    private CompressedBitmap row(String eventId) {
+        CompressedBitmap bitmap = bitmaps.get(eventId);
+        return bitmap != null ? bitmap : new CompressedBitmap();
+    }
+}
@@ -0,0 +1,168 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replica side of event replication, see {@link ReplicationServer}.
+ * Keeps EventManager in a read replica process up to date with the primary, so listing and
+ * browsing never touch the writer. Writes, including sign-ups and password changes, are sent to
+ * the primary and return once the replica has applied their result.
+ * If nothing, not even a heartbeat, arrives within the staleness bound the replica reconnects
+ * and loads a fresh snapshot; until then {@link #getStalenessMillis()} shows how old its data is.
+ * Enabled with -Diium.replication=replica; the bound is set with iium.replication.maxStalenessMs.
+ */
+public class ReplicaClient {
+    private static final long DEFAULT_MAX_STALENESS_MS = 3000;
+    private static final long WRITE_TIMEOUT_MS = 5000;
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private final EventManager eventManager;
+    private final long maxStalenessMs = Long.getLong("iium.replication.maxStalenessMs", DEFAULT_MAX_STALENESS_MS);
+    private final Map<Long, CompletableFuture<Boolean>> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicLong writeIds = new AtomicLong();
+    private volatile BufferedWriter out; // null while not connected
+    private volatile long lastHeard; // System.nanoTime() of the last line from the primary
+
+    ReplicaClient(EventManager eventManager) {
+        this.eventManager = eventManager;
+    }
+
+    public static boolean isEnabled() {
+        return "replica".equalsIgnoreCase(System.getProperty("iium.replication"));
+    }
+
+    /**
+     * Connects to the primary on a daemon thread, reconnecting whenever the connection is lost.
+     */
+    void start() {
+        Thread thread = new Thread(this::run, "replica-client");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets how long ago the last message from the primary arrived, i.e. how stale the events may be.
+     * @return The age in milliseconds, or Long.MAX_VALUE if no snapshot has been loaded yet
+     */
+    public long getStalenessMillis() {
+        return lastHeard == 0 ? Long.MAX_VALUE : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastHeard);
+    }
+
+    public boolean isWithinStalenessBound() {
+        return getStalenessMillis() <= maxStalenessMs;
+    }
+
+    /**
+     * Sends a write to the primary and waits for its result.
+     * @return Whether the primary accepted the write; false if it is unreachable
+     */
+    boolean forward(Change.Type type, String key, String data) {
+        BufferedWriter writer = out;
+        if (writer == null) {
+            return false;
+        }
+        long id = writeIds.incrementAndGet();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        pendingWrites.put(id, result);
+        try {
+            synchronized (writer) {
+                writer.write(ReplicationServer.WRITE + " " + new Change(id, "replica", type, key, data).toLogLine());
+                writer.newLine();
+                writer.flush();
+            }
+            return result.get(WRITE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            System.err.println("Error sending write to primary: " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pendingWrites.remove(id);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                receive();
+            } catch (SocketTimeoutException e) {
+                System.err.println("No message from primary for " + maxStalenessMs + " ms, reconnecting");
+            } catch (IOException e) {
+                // Primary not running yet or gone, retried below
+            }
+            out = null;
+            for (CompletableFuture<Boolean> write : pendingWrites.values()) {
+                write.complete(false);
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void receive() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), ReplicationServer.getPort())) {
+            socket.setSoTimeout((int) maxStalenessMs);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            List<Event> snapshot = null;
+            Map<String, Long> revisions = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(ReplicationServer.SNAPSHOT)) {
+                    snapshot = new ArrayList<>();
+                    revisions = new HashMap<>();
+                } else if (line.equals(ReplicationServer.READY)) {
+                    eventManager.replaceEvents(snapshot, revisions);
+                    snapshot = null;
+                    // Users saved before the snapshot are in the primary's file by now
+                    UserManager.getInstance().reloadUsers();
+                } else if (line.startsWith(ReplicationServer.RESULT)) {
+                    String[] parts = line.split(" ");
+                    CompletableFuture<Boolean> write = pendingWrites.get(Long.parseLong(parts[1]));
+                    if (write != null) {
+                        write.complete(Boolean.parseBoolean(parts[2]));
+                    }
+                } else if (!line.startsWith(ReplicationServer.HEARTBEAT)) {
+                    Change change = Change.fromLogLine(line);
+                    if (change == null) {
+                        continue;
+                    }
+                    if (change.getType() == Change.Type.USER_SAVED) {
+                        UserManager.getInstance().applyPrimaryChange(change);
+                    } else if (snapshot != null) {
+                        Event event = Event.fromFileString(change.getData());
+                        if (event != null) {
+                            snapshot.add(event);
+                            revisions.put(event.getId(), change.getSequence());
+                        }
+                    } else {
+                        eventManager.applyExternalChange(change);
+                    }
+                }
+                // Only counts as fresh once the snapshot is in
+                if (snapshot == null) {
+                    lastHeard = System.nanoTime();
+                }
+            }
+        }
+    }
+}
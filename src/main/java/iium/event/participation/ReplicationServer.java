@@ -0,0 +1,263 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primary side of event replication.
+ * Read replicas on the same machine connect over a loopback socket. Each gets a snapshot of all
+ * events, then every change in sequence order as {@link Change} log lines, with a heartbeat
+ * whenever there is nothing to send. Writes made on a replica, to events and to user accounts,
+ * are sent here, run through EventManager or UserManager and answered once their change has
+ * been queued to the replica, so a replica always sees its own writes and only the primary
+ * writes the data files.
+ * Enabled with -Diium.replication=primary; the port is set with iium.replication.port.
+ */
+public class ReplicationServer {
+    static final String SNAPSHOT = "#SNAPSHOT";
+    static final String READY = "#READY";
+    static final String HEARTBEAT = "#HEARTBEAT";
+    static final String WRITE = "#WRITE";
+    static final String RESULT = "#RESULT";
+    static final String NEW_EVENT = "new";
+    static final String NEW_USER = "new";
+    static final String CHANGED_USER = "changed";
+    static final int DEFAULT_PORT = 5151;
+    static final long HEARTBEAT_INTERVAL_MS = 500;
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    private final EventManager eventManager;
+    private final ChangeLog changeLog;
+    private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+
+    private ReplicationServer(EventManager eventManager) {
+        this.eventManager = eventManager;
+        this.changeLog = ChangeLog.getInstance();
+    }
+
+    public static boolean isEnabled() {
+        return "primary".equalsIgnoreCase(System.getProperty("iium.replication"));
+    }
+
+    static int getPort() {
+        return Integer.getInteger("iium.replication.port", DEFAULT_PORT);
+    }
+
+    /**
+     * Starts accepting replicas on a daemon thread.
+     * @throws IOException If the port cannot be opened
+     */
+    public static ReplicationServer start(EventManager eventManager) throws IOException {
+        ReplicationServer server = new ReplicationServer(eventManager);
+        ServerSocket serverSocket = new ServerSocket(getPort(), 50, InetAddress.getLoopbackAddress());
+        server.changeLog.addCommitListener(server::broadcast);
+        server.changeLog.addListener(new ChangeLog.Listener() {
+            @Override
+            public void apply(Change change) {
+                server.broadcast(change);
+            }
+
+            @Override
+            public void reload() {
+                // Changes were missed, so the replicas need a new snapshot
+                for (Replica replica : server.replicas) {
+                    replica.close();
+                }
+            }
+        });
+        Thread acceptor = new Thread(() -> server.acceptReplicas(serverSocket), "replication-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    private void acceptReplicas(ServerSocket serverSocket) {
+        while (true) {
+            try {
+                Socket socket = serverSocket.accept();
+                new Replica(socket).start();
+            } catch (IOException e) {
+                System.err.println("Error accepting replica: " + e.getMessage());
+            }
+        }
+    }
+
+    private void broadcast(Change change) {
+        String line = change.toLogLine();
+        for (Replica replica : replicas) {
+            replica.send(line);
+        }
+    }
+
+    /**
+     * Runs a write sent by a replica.
+     * @return Whether EventManager or UserManager accepted it
+     */
+    private boolean runWrite(Change request) {
+        String eventId = request.getKey();
+        switch (request.getType()) {
+            case EVENT_SAVED:
+                String[] data = request.getData().split(",", 2);
+                Event event = data.length == 2 ? Event.fromFileString(data[1]) : null;
+                if (event == null) {
+                    return false;
+                }
+                if (NEW_EVENT.equals(data[0])) {
+                    return eventManager.addEvent(event);
+                }
+                return eventManager.updateEvent(event, Long.parseLong(data[0]));
+            case EVENT_DELETED:
+                return eventManager.deleteEvent(eventId);
+            case REGISTERED:
+                return eventManager.registerParticipant(eventId, request.getData());
+            case UNREGISTERED:
+                return eventManager.unregisterParticipant(eventId, request.getData());
+            case USER_SAVED:
+                String[] user = request.getData().split(",", 2);
+                User stored = user.length == 2 ? User.fromFileString(user[1]) : null;
+                return stored != null && UserManager.getInstance().runReplicaWrite(user[0], stored);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * One connected replica, with the queue of lines still to be sent to it.
+     * A replica that falls so far behind that its queue fills up is disconnected; it
+     * reconnects and starts again from a fresh snapshot.
+     */
+    private final class Replica {
+        private final Socket socket;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final List<String> snapshot = new ArrayList<>();
+        private volatile boolean closed;
+
+        Replica(Socket socket) {
+            this.socket = socket;
+        }
+
+        void start() {
+            // Read beforehand, so the change log stays locked only for copying memory, as in Backup
+            for (Event event : eventManager.getAllEvents()) {
+                if (!event.isParticipantListLoaded()) {
+                    event.getParticipantIds();
+                }
+            }
+            List<String> ids = new ArrayList<>();
+            List<Long> revisions = new ArrayList<>();
+            List<String> fields = new ArrayList<>();
+            List<IntSet> participants = new ArrayList<>();
+            long[] sequence = new long[1];
+            // Snapshot and registration happen together, so no change is missed or sent twice
+            changeLog.runLocked(() -> {
+                sequence[0] = changeLog.getLastSequence();
+                for (Event event : eventManager.getAllEvents()) {
+                    ids.add(event.getId());
+                    revisions.add(eventManager.getRevision(event.getId()));
+                    fields.add(event.toMetadataString());
+                    participants.add(event.getParticipantIds());
+                }
+                replicas.add(this);
+            });
+            snapshot.add(SNAPSHOT + " " + sequence[0]);
+            for (int i = 0; i < fields.size(); i++) {
+                String participantList = Event.toParticipantsString(participants.get(i));
+                String line = participantList.isEmpty() ? fields.get(i) : fields.get(i) + "," + participantList;
+                snapshot.add(new Change(revisions.get(i), "primary", Change.Type.EVENT_SAVED, ids.get(i), line).toLogLine());
+            }
+            snapshot.add(READY);
+            Thread sender = new Thread(this::sendLines, "replication-sender");
+            sender.setDaemon(true);
+            sender.start();
+            Thread receiver = new Thread(this::receiveWrites, "replication-receiver");
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+
+        void send(String line) {
+            if (!closed && !queue.offer(line)) {
+                System.err.println("Replica fell behind, disconnecting it");
+                close();
+            }
+        }
+
+        private void sendLines() {
+            try {
+                BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                for (String line : snapshot) {
+                    out.write(line);
+                    out.newLine();
+                }
+                snapshot.clear();
+                out.flush();
+                while (!closed) {
+                    String line = queue.poll(HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (line == null) {
+                        line = HEARTBEAT + " " + changeLog.getLastSequence();
+                    }
+                    out.write(line);
+                    out.newLine();
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                // Replica went away
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void receiveWrites() {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!line.startsWith(WRITE + " ")) {
+                        continue;
+                    }
+                    Change request = Change.fromLogLine(line.substring(WRITE.length() + 1));
+                    if (request != null) {
+                        boolean accepted;
+                        try {
+                            accepted = runWrite(request);
+                        } catch (RuntimeException e) {
+                            System.err.println("Error running replica write: " + e.getMessage());
+                            accepted = false;
+                        }
+                        // Queued after the change itself, so the replica has applied it when it sees the result
+                        send(RESULT + " " + request.getSequence() + " " + accepted);
+                    }
+                }
+            } catch (IOException e) {
+                // Replica went away
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            closed = true;
+            replicas.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                System.err.println("Error closing replica connection: " + e.getMessage());
+            }
+        }
+    }
+}
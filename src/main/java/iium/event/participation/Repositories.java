@@ -0,0 +1,62 @@
+package iium.event.participation;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Creates the repositories used by EventManager and UserManager.
+ * The backend is chosen with the "iium.storage" system property:
+ * "text" (default) uses users.txt and one events file per faculty, events.txt for General,
+ * see {@link PartitionedEventRepository}, "kv" uses the embedded store in iium-data.kv,
+ * "segmented" keeps users.txt but splits events into segment files under events/.
+ */
+public final class Repositories {
+    private static final String EVENT_FILE = "events.txt";
+    private static final String USER_FILE = "users.txt";
+    private static final String STORE_FILE = "iium-data.kv";
+    private static final String SEGMENT_DIRECTORY = "events";
+    private static final String ARCHIVE_FILE = "events-archive.gz";
+    private static KeyValueStore store;
+
+    private Repositories() {
+    }
+
+    public static EventRepository createEventRepository() {
+        if ("segmented".equals(storageType())) {
+            return new SegmentedEventRepository(SEGMENT_DIRECTORY, EVENT_FILE);
+        }
+        KeyValueStore kv = "kv".equals(storageType()) ? store() : null;
+        return kv != null ? new KeyValueEventRepository(kv) : new PartitionedEventRepository(Paths.get(""), EVENT_FILE);
+    }
+
+    /**
+     * Creates the archive of ended events, which is the same for every backend.
+     */
+    public static EventArchive createEventArchive() {
+        return new EventArchive(Paths.get(ARCHIVE_FILE));
+    }
+
+    public static UserRepository createUserRepository() {
+        KeyValueStore kv = "kv".equals(storageType()) ? store() : null;
+        return kv != null ? new KeyValueUserRepository(kv) : new TextUserRepository(USER_FILE);
+    }
+
+    private static String storageType() {
+        return System.getProperty("iium.storage", "text").trim().toLowerCase();
+    }
+
+    /**
+     * Opens the shared store on first use.
+     * @return The store, or null if it could not be opened and text files should be used instead
+     */
+    private static synchronized KeyValueStore store() {
+        if (store == null) {
+            try {
+                store = KeyValueStore.open(Paths.get(STORE_FILE));
+            } catch (IOException e) {
+                System.err.println("Error opening " + STORE_FILE + ", falling back to text files: " + e.getMessage());
+            }
+        }
+        return store;
+    }
+}
@@ -0,0 +1,174 @@
+package iium.event.participation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Each student's registered events as time slots ordered by start, so checking a new
+ * registration for overlaps looks at a few neighbouring slots instead of every registration.
+ * Maintained by EventManager next to RegistrationIndex. Events without a valid start time
+ * have no slot and never conflict.
+ * Thread-safe. Changes and lookups hold the index's own lock only for in-memory work, and
+ * {@link #version(int)} takes no lock, so table cells can check it on every repaint.
+ */
+public class ScheduleIndex {
+    private final Map<Integer, Schedule> schedules = new ConcurrentHashMap<>(); // user ID -> schedule
+    private final Map<String, Slot> slots = new HashMap<>(); // event ID -> its current slot
+
+    /**
+     * The time of one event, in minutes since the epoch, end exclusive.
+     */
+    private static final class Slot implements Comparable<Slot> {
+        final long start;
+        final long end;
+        final String eventId;
+
+        Slot(long start, long end, String eventId) {
+            this.start = start;
+            this.end = end;
+            this.eventId = eventId;
+        }
+
+        @Override
+        public int compareTo(Slot other) {
+            int order = Long.compare(start, other.start);
+            return order != 0 ? order : eventId.compareTo(other.eventId);
+        }
+    }
+
+    /**
+     * The slots of one student. The longest slot bounds how far before a start time an
+     * overlapping slot can begin, so slots may overlap each other and lookups stay correct.
+     */
+    private static final class Schedule {
+        final TreeSet<Slot> slots = new TreeSet<>();
+        long longest;
+        volatile int version;
+
+        void add(Slot slot) {
+            slots.add(slot);
+            longest = Math.max(longest, slot.end - slot.start);
+            version++;
+        }
+
+        void remove(Slot slot) {
+            if (slots.remove(slot)) {
+                version++;
+            }
+        }
+    }
+
+    /**
+     * Adds an event, or moves it in its participants' schedules after its time changed.
+     */
+    public void put(Event event) {
+        IntSet participants = event.getParticipantIds(); // May read the list from disk, so before locking
+        synchronized (this) {
+            put(event, participants);
+        }
+    }
+
+    private void put(Event event, IntSet participants) {
+        Slot old = slots.remove(event.getId());
+        Slot slot = slotOf(event);
+        if (slot != null) {
+            slots.put(event.getId(), slot);
+        }
+        if (old == null && slot == null) {
+            return;
+        }
+        participants.forEach(userId -> {
+            Schedule schedule = schedules.computeIfAbsent(userId, id -> new Schedule());
+            if (old != null) {
+                schedule.remove(old);
+            }
+            if (slot != null) {
+                schedule.add(slot);
+            }
+        });
+    }
+
+    /**
+     * Removes an event from its participants' schedules.
+     */
+    public void remove(Event event) {
+        IntSet participants = event.getParticipantIds();
+        synchronized (this) {
+            remove(event.getId(), participants);
+        }
+    }
+
+    private void remove(String eventId, IntSet participants) {
+        Slot old = slots.remove(eventId);
+        if (old != null) {
+            participants.forEach(userId -> {
+                Schedule schedule = schedules.get(userId);
+                if (schedule != null) {
+                    schedule.remove(old);
+                }
+            });
+        }
+    }
+
+    public synchronized void clear() {
+        schedules.clear();
+        slots.clear();
+    }
+
+    public synchronized void register(String eventId, int userId) {
+        Slot slot = slots.get(eventId);
+        if (slot != null) {
+            schedules.computeIfAbsent(userId, id -> new Schedule()).add(slot);
+        }
+    }
+
+    public synchronized void unregister(String eventId, int userId) {
+        Slot slot = slots.get(eventId);
+        Schedule schedule = schedules.get(userId);
+        if (slot != null && schedule != null) {
+            schedule.remove(slot);
+        }
+    }
+
+    /**
+     * Gets the student's events that overlap the given event, not counting the event itself.
+     * @return The IDs of the overlapping events, in start order
+     */
+    public synchronized List<String> conflicts(int userId, String eventId) {
+        List<String> conflicts = new ArrayList<>();
+        Slot slot = slots.get(eventId);
+        Schedule schedule = schedules.get(userId);
+        if (slot == null || schedule == null) {
+            return conflicts;
+        }
+        // Only slots starting less than the longest duration before this one can reach into it
+        Slot from = new Slot(slot.start - schedule.longest, slot.start - schedule.longest, "");
+        Slot to = new Slot(slot.end, slot.end, "");
+        for (Slot other : schedule.slots.subSet(from, true, to, false)) {
+            if (other.end > slot.start && !other.eventId.equals(eventId)) {
+                conflicts.add(other.eventId);
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Gets a counter that changes whenever the student's schedule changes.
+     */
+    public int version(int userId) {
+        Schedule schedule = schedules.get(userId);
+        return schedule != null ? schedule.version : 0;
+    }
+
+    private static Slot slotOf(Event event) {
+        long start = Event.toEpochMinute(event.getDate());
+        if (start == Event.NO_TIME) {
+            return null;
+        }
+        return new Slot(start, event.getEndMinute(), event.getId());
+    }
+}
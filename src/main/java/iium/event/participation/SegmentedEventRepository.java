@@ -0,0 +1,205 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Stores events in a directory of segment files, each holding the events whose ID hashes to it.
+ * A small manifest records the number of segments. Segments are loaded in parallel, and a change
+ * to one event rewrites only the segment that contains it.
+ */
+public class SegmentedEventRepository implements EventRepository {
+    private static final String MANIFEST_FILE = "manifest.properties";
+    private static final int DEFAULT_SEGMENT_COUNT = 16;
+
+    private final File directory;
+    private final String legacyFile;
+    private final List<Map<String, Event>> segments = new ArrayList<>(); // Events as last written, by ID
+    private final List<EventFile> segmentFiles = new ArrayList<>();
+    private int segmentCount;
+
+    /**
+     * @param directory The directory holding the manifest and segment files
+     * @param legacyFile A single events file to import from when the directory does not exist yet
+     */
+    public SegmentedEventRepository(String directory, String legacyFile) {
+        this.directory = new File(directory);
+        this.legacyFile = legacyFile;
+    }
+
+    @Override
+    public synchronized List<Event> loadAll() {
+        if (!new File(directory, MANIFEST_FILE).exists()) {
+            return importLegacyFile();
+        }
+        segmentCount = readSegmentCount();
+        resetSegments();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(segmentCount, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<List<Event>>> loads = new ArrayList<>();
+            for (int i = 0; i < segmentCount; i++) {
+                EventFile segment = segmentFiles.get(i);
+                loads.add(executor.submit(segment::read));
+            }
+            for (int i = 0; i < segmentCount; i++) {
+                for (Event event : loads.get(i).get()) {
+                    segments.get(i).putIfAbsent(event.getId(), event);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while loading events");
+        } catch (ExecutionException e) {
+            System.err.println("Error loading events: " + e.getCause().getMessage());
+        } finally {
+            executor.shutdown();
+        }
+        return allEvents();
+    }
+
+    @Override
+    public synchronized void save(Event event) {
+        int segment = segmentOf(event.getId());
+        segments.get(segment).put(event.getId(), event);
+        writeSegment(segment);
+    }
+
+    @Override
+    public synchronized void delete(String eventId) {
+        int segment = segmentOf(eventId);
+        if (segments.get(segment).remove(eventId) != null) {
+            writeSegment(segment);
+        }
+    }
+
+    @Override
+    public synchronized void deleteAll(Collection<String> eventIds) {
+        TreeSet<Integer> changed = new TreeSet<>();
+        for (String eventId : eventIds) {
+            int segment = segmentOf(eventId);
+            if (segments.get(segment).remove(eventId) != null) {
+                changed.add(segment);
+            }
+        }
+        for (int segment : changed) {
+            writeSegment(segment);
+        }
+    }
+
+    @Override
+    public synchronized void saveAll(List<Event> events) {
+        resetSegments();
+        for (Event event : events) {
+            segments.get(segmentOf(event.getId())).put(event.getId(), event);
+        }
+        writeManifest();
+        for (int i = 0; i < segmentCount; i++) {
+            writeSegment(i);
+        }
+    }
+
+    @Override
+    public synchronized void storedElsewhere(Event event) {
+        int segment = segmentOf(event.getId());
+        event.setParticipantLoader(segmentFiles.get(segment)::loadParticipants);
+        segments.get(segment).put(event.getId(), event);
+    }
+
+    @Override
+    public synchronized void deletedElsewhere(String eventId) {
+        segments.get(segmentOf(eventId)).remove(eventId);
+    }
+
+    private List<Event> importLegacyFile() {
+        segmentCount = DEFAULT_SEGMENT_COUNT;
+        resetSegments();
+        List<Event> events = new TextEventRepository(legacyFile).loadAll();
+        if (!events.isEmpty()) {
+            saveAll(events);
+        }
+        return allEvents();
+    }
+
+    /**
+     * Gets all events ordered by date, then ID, so the order does not depend on the hashing.
+     */
+    private List<Event> allEvents() {
+        List<Event> events = new ArrayList<>();
+        for (Map<String, Event> segment : segments) {
+            events.addAll(segment.values());
+        }
+        events.sort(Comparator.comparing((Event event) -> event.getDate() == null ? "" : event.getDate())
+            .thenComparing(Event::getId));
+        return events;
+    }
+
+    private void resetSegments() {
+        segments.clear();
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(new LinkedHashMap<>());
+        }
+        // Keep the open segment files, they know where the stored participant lists are
+        if (segmentFiles.size() != segmentCount) {
+            segmentFiles.clear();
+            for (int i = 0; i < segmentCount; i++) {
+                segmentFiles.add(new EventFile(new File(directory, String.format("segment-%03d.txt", i)).toPath()));
+            }
+        }
+    }
+
+    private int segmentOf(String eventId) {
+        return Math.floorMod(eventId.hashCode(), segmentCount);
+    }
+
+    private int readSegmentCount() {
+        Properties manifest = new Properties();
+        try (Reader reader = new FileReader(new File(directory, MANIFEST_FILE))) {
+            manifest.load(reader);
+            return Math.max(1, Integer.parseInt(manifest.getProperty("segments", String.valueOf(DEFAULT_SEGMENT_COUNT))));
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading event manifest: " + e.getMessage());
+            return DEFAULT_SEGMENT_COUNT;
+        }
+    }
+
+    private void writeManifest() {
+        directory.mkdirs();
+        Properties manifest = new Properties();
+        manifest.setProperty("segments", String.valueOf(segmentCount));
+        manifest.setProperty("partitioning", "hash(id) mod segments");
+        Path target = new File(directory, MANIFEST_FILE).toPath();
+        Path temp = Durability.tempFileFor(target);
+        try {
+            try (Writer writer = new FileWriter(temp.toFile())) {
+                manifest.store(writer, "IIUM event segments");
+            }
+            Durability.getInstance().replace(temp, target);
+        } catch (IOException e) {
+            System.err.println("Error saving event manifest: " + e.getMessage());
+        }
+    }
+
+    private void writeSegment(int segment) {
+        if (!new File(directory, MANIFEST_FILE).exists()) {
+            writeManifest();
+        }
+        try {
+            segmentFiles.get(segment).write(segments.get(segment).values());
+        } catch (IOException e) {
+            System.err.println("Error saving event segment " + segment + ": " + e.getMessage());
+        }
+    }
+}
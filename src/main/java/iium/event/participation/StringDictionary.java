@@ -0,0 +1,76 @@
+package iium.event.participation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dictionary of repeated field values (event locations and organizers, user genders).
+ * The loaders pass these values through {@link #encode(String)} so that equal values
+ * read from different lines share one String instance instead of one copy per line.
+ * Entries are never removed, so only fields with few distinct values belong here; unique
+ * values such as usernames, phone numbers and emails would only add a map entry each.
+ * Roles need no entry, they are the constants in {@link User}.
+ */
+public final class StringDictionary {
+    private static final StringDictionary instance = new StringDictionary();
+
+    private final ConcurrentHashMap<String, String> entries = new ConcurrentHashMap<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder requestedBytes = new LongAdder();
+    private final LongAdder retainedBytes = new LongAdder();
+
+    private StringDictionary() {
+    }
+
+    public static StringDictionary getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the shared instance for the given value, adding it on first use.
+     * @param value The value read from a file, may be null
+     * @return The canonical instance equal to value
+     */
+    public String encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        long size = estimateSize(value);
+        lookups.increment();
+        requestedBytes.add(size);
+        String existing = entries.putIfAbsent(value, value);
+        if (existing != null) {
+            return existing;
+        }
+        retainedBytes.add(size);
+        return value;
+    }
+
+    /**
+     * Number of distinct values held by the dictionary.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Describes the heap held by encoded values compared with keeping one copy per field.
+     * @return A one-line report, e.g. for logging after startup
+     */
+    public String footprintReport() {
+        long before = requestedBytes.sum();
+        long after = retainedBytes.sum();
+        return String.format("String dictionary: %d lookups, %d distinct values, ~%d KB without dictionary, ~%d KB with dictionary (%.1f%% saved)",
+            lookups.sum(), entries.size(), before / 1024, after / 1024,
+            before == 0 ? 0.0 : 100.0 * (before - after) / before);
+    }
+
+    /**
+     * Approximate shallow size of a compact (Latin-1) String plus its backing array
+     * on a 64-bit JVM with compressed oops.
+     */
+    private static long estimateSize(String value) {
+        long array = (16 + value.length() + 7) & ~7L;
+        return 24 + array;
+    }
+}
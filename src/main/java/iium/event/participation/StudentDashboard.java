@@ -1,25 +1,32 @@
 package iium.event.participation;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
 /**
  * Dashboard for Student users.
  * Provides functionality for viewing and registering for events.
  */
 public class StudentDashboard extends BaseDashboard {
+    private static final Duration DETAILS_DELAY = Duration.millis(150);
+    
     private TableView<Event> eventTable;
     private TableView<Event> registeredEventsTable;
     private ObservableList<Event> eventData;
     private ObservableList<Event> registeredEventData;
     private Student currentStudent;
+    private TabPane tabPane;
+    private Tab myEventsTab;
     
     public StudentDashboard(Stage primaryStage, User user, UserManager userManager, EventManager eventManager) {
         super(primaryStage, user, userManager, eventManager);
@@ -32,7 +39,7 @@ public class StudentDashboard extends BaseDashboard {
     protected void setupContent() {
         // Don't call super.setupContent() since we're replacing the content
         // Create tab pane for different views
-        TabPane tabPane = new TabPane();
+        tabPane = new TabPane();
         
         // Tab 1: Available Events
         Tab availableEventsTab = new Tab("Available Events");
@@ -40,7 +47,7 @@ public class StudentDashboard extends BaseDashboard {
         availableEventsTab.setContent(createAvailableEventsView());
         
         // Tab 2: My Registered Events
-        Tab myEventsTab = new Tab("My Events");
+        myEventsTab = new Tab("My Events");
         myEventsTab.setClosable(false);
         myEventsTab.setContent(createMyEventsView());
         
@@ -56,8 +63,40 @@ public class StudentDashboard extends BaseDashboard {
         
         root.setCenter(contentBox);
         
-        // Load events
+        // Load events, again once startup loading has finished
         refreshEvents();
+        whenEventsLoaded(() -> {
+            eventTable.setPlaceholder(new Label("No events"));
+            refreshEvents();
+        });
+        whenEventsChangeElsewhere(this::refreshEvents);
+        showReminders();
+    }
+    
+    /**
+     * Shows this student's event reminders while the dashboard is open, see
+     * {@link EventManager#addReminderListener(BiConsumer)}. Stops once the dashboard has been
+     * removed from its window, e.g. on logout.
+     */
+    private void showReminders() {
+        String username = currentUser.getUsername();
+        BiConsumer<Event, String> listener = (event, participant) -> {
+            if (!participant.equals(username)) {
+                return;
+            }
+            Platform.runLater(() -> {
+                if (root.getScene() == null) {
+                    return; // Posted before the dashboard was closed
+                }
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Event Reminder");
+                alert.setHeaderText(event.getTitle());
+                alert.setContentText("Starts at " + event.getDate() + " in " + event.getLocation() + ".");
+                alert.show();
+            });
+        };
+        eventManager.addReminderListener(listener);
+        whenClosed(() -> eventManager.removeReminderListener(listener));
     }
     
     private VBox createAvailableEventsView() {
@@ -68,29 +107,26 @@ public class StudentDashboard extends BaseDashboard {
         ToolBar toolBar = new ToolBar();
         Button registerBtn = new Button("Register for Selected Event");
         Button refreshBtn = new Button("Refresh");
-        toolBar.getItems().addAll(registerBtn, refreshBtn);
+        TextField searchField = createSearchField("Search title or location", eventManager::suggestEvents,
+            event -> event.getTitle() + " - " + event.getLocation() + " (" + event.getDate() + ")", this::showEvent);
+        toolBar.getItems().addAll(registerBtn, refreshBtn, new Separator(), searchField);
         
         // Event table
         eventTable = new TableView<>();
         eventData = FXCollections.observableArrayList();
         
-        TableColumn<Event, String> idCol = new TableColumn<>("ID");
-        idCol.setCellValueFactory(new PropertyValueFactory<>("id"));
+        TableColumn<Event, String> idCol = EventColumn.text("ID", Event::getId);
+        TableColumn<Event, String> titleCol = EventColumn.text("Title", Event::getTitle);
+        TableColumn<Event, String> dateCol = EventColumn.text("Date", Event::getDate);
+        TableColumn<Event, String> locationCol = EventColumn.text("Location", Event::getLocation);
+        TableColumn<Event, Integer> availableCol = EventColumn.number("Available", Event::getAvailableSpaces);
+        // Recomputed only for rows on screen, and only after this student's schedule changed
+        TableColumn<Event, String> conflictsCol = EventColumn.text("Conflicts", this::describeConflicts,
+            () -> eventManager.getScheduleVersion(currentUser.getUsername()));
         
-        TableColumn<Event, String> titleCol = new TableColumn<>("Title");
-        titleCol.setCellValueFactory(new PropertyValueFactory<>("title"));
-        
-        TableColumn<Event, String> dateCol = new TableColumn<>("Date");
-        dateCol.setCellValueFactory(new PropertyValueFactory<>("date"));
-        
-        TableColumn<Event, String> locationCol = new TableColumn<>("Location");
-        locationCol.setCellValueFactory(new PropertyValueFactory<>("location"));
-        
-        TableColumn<Event, Integer> availableCol = new TableColumn<>("Available");
-        availableCol.setCellValueFactory(new PropertyValueFactory<>("availableSpaces"));
-        
-        eventTable.getColumns().addAll(idCol, titleCol, dateCol, locationCol, availableCol);
+        eventTable.getColumns().addAll(idCol, titleCol, dateCol, locationCol, availableCol, conflictsCol);
         eventTable.setItems(eventData);
+        eventTable.setPlaceholder(new Label(eventManager.isLoaded() ? "No events" : "Loading events..."));
         
         // Event details area
         TextArea detailsArea = new TextArea();
@@ -99,17 +135,7 @@ public class StudentDashboard extends BaseDashboard {
         detailsArea.setPrefRowCount(4);
         
         // Show event details when selected
-        eventTable.getSelectionModel().selectedItemProperty().addListener((obs, oldSelection, newSelection) -> {
-            if (newSelection != null) {
-                detailsArea.setText(
-                    "Description: " + newSelection.getDescription() + "\n\n" +
-                    "Capacity: " + newSelection.getAvailableSpaces() + "/" + newSelection.getCapacity() + " participants\n" +
-                    "Organizer: " + newSelection.getOrganizerId()
-                );
-            } else {
-                detailsArea.clear();
-            }
-        });
+        showDetailsOnSelection(eventTable, detailsArea);
         
         // Set up event handlers
         registerBtn.setOnAction(e -> registerForSelectedEvent());
@@ -136,17 +162,10 @@ public class StudentDashboard extends BaseDashboard {
         registeredEventsTable = new TableView<>();
         registeredEventData = FXCollections.observableArrayList();
         
-        TableColumn<Event, String> idCol = new TableColumn<>("ID");
-        idCol.setCellValueFactory(new PropertyValueFactory<>("id"));
-        
-        TableColumn<Event, String> titleCol = new TableColumn<>("Title");
-        titleCol.setCellValueFactory(new PropertyValueFactory<>("title"));
-        
-        TableColumn<Event, String> dateCol = new TableColumn<>("Date");
-        dateCol.setCellValueFactory(new PropertyValueFactory<>("date"));
-        
-        TableColumn<Event, String> locationCol = new TableColumn<>("Location");
-        locationCol.setCellValueFactory(new PropertyValueFactory<>("location"));
+        TableColumn<Event, String> idCol = EventColumn.text("ID", Event::getId);
+        TableColumn<Event, String> titleCol = EventColumn.text("Title", Event::getTitle);
+        TableColumn<Event, String> dateCol = EventColumn.text("Date", Event::getDate);
+        TableColumn<Event, String> locationCol = EventColumn.text("Location", Event::getLocation);
         
         registeredEventsTable.getColumns().addAll(idCol, titleCol, dateCol, locationCol);
         registeredEventsTable.setItems(registeredEventData);
@@ -158,17 +177,7 @@ public class StudentDashboard extends BaseDashboard {
         detailsArea.setPrefRowCount(4);
         
         // Show event details when selected
-        registeredEventsTable.getSelectionModel().selectedItemProperty().addListener((obs, oldSelection, newSelection) -> {
-            if (newSelection != null) {
-                detailsArea.setText(
-                    "Description: " + newSelection.getDescription() + "\n\n" +
-                    "Capacity: " + newSelection.getAvailableSpaces() + "/" + newSelection.getCapacity() + " participants\n" +
-                    "Organizer: " + newSelection.getOrganizerId()
-                );
-            } else {
-                detailsArea.clear();
-            }
-        });
+        showDetailsOnSelection(registeredEventsTable, detailsArea);
         
         // Set up event handlers
         unregisterBtn.setOnAction(e -> unregisterFromSelectedEvent());
@@ -184,6 +193,47 @@ public class StudentDashboard extends BaseDashboard {
         return view;
     }
     
+    /**
+     * Shows the details of a table's selected event once the selection has rested for
+     * {@link #DETAILS_DELAY}, so holding an arrow key through the table does not format and lay
+     * out every event passed. The text comes from the {@link EventDetailCache} shared by both views.
+     */
+    private void showDetailsOnSelection(TableView<Event> table, TextArea detailsArea) {
+        PauseTransition delay = new PauseTransition(DETAILS_DELAY);
+        delay.setOnFinished(e -> {
+            Event selected = table.getSelectionModel().getSelectedItem();
+            if (selected != null) {
+                detailsArea.setText(EventDetailCache.getInstance().get(selected));
+            }
+        });
+        table.getSelectionModel().selectedItemProperty().addListener((obs, oldSelection, newSelection) -> {
+            if (newSelection != null) {
+                delay.playFromStart();
+            } else {
+                delay.stop();
+                detailsArea.clear();
+            }
+        });
+    }
+    
+    /**
+     * Selects a search result in the table that lists it.
+     */
+    private void showEvent(Event event) {
+        TableView<Event> table = eventTable;
+        if (!eventData.contains(event)) {
+            if (!registeredEventData.contains(event)) {
+                refreshEvents(); // Added since the table was filled
+            }
+            if (registeredEventData.contains(event)) {
+                table = registeredEventsTable;
+                tabPane.getSelectionModel().select(myEventsTab);
+            }
+        }
+        table.getSelectionModel().select(event);
+        table.scrollTo(event);
+    }
+    
     private void refreshEvents() {
         loadEvents();
         refreshRegisteredEvents();
@@ -219,6 +269,17 @@ public class StudentDashboard extends BaseDashboard {
             return;
         }
         
+        if (eventManager.isRegistrationClosed(selected.getId())) {
+            showError("Registration Closed", "Registration for this event has closed.");
+            return;
+        }
+        
+        String conflicts = describeConflicts(selected);
+        if (!conflicts.isEmpty()) {
+            showError("Schedule Conflict", "This event overlaps with an event you are registered for: " + conflicts);
+            return;
+        }
+        
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
         confirm.setTitle("Confirm Registration");
         confirm.setHeaderText("Register for Event");
@@ -229,7 +290,6 @@ public class StudentDashboard extends BaseDashboard {
             if (eventManager.registerParticipant(selected.getId(), currentUser.getUsername()) &&
                 currentStudent.registerForEvent(selected.getId())) {
                 
-                userManager.saveUsers();
                 refreshEvents();
                 showSuccess("Success", "Successfully registered for the event!");
             } else {
@@ -238,6 +298,20 @@ public class StudentDashboard extends BaseDashboard {
         }
     }
     
+    /**
+     * Lists the student's registered events that overlap the given event, empty if none do.
+     */
+    private String describeConflicts(Event event) {
+        StringBuilder text = new StringBuilder();
+        for (Event conflict : eventManager.getConflictingEvents(event.getId(), currentUser.getUsername())) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(conflict.getTitle()).append(" (").append(conflict.getDate()).append(")");
+        }
+        return text.toString();
+    }
+    
     private void unregisterFromSelectedEvent() {
         Event selected = registeredEventsTable.getSelectionModel().getSelectedItem();
         if (selected == null) {
@@ -255,7 +329,6 @@ public class StudentDashboard extends BaseDashboard {
             if (eventManager.unregisterParticipant(selected.getId(), currentUser.getUsername()) &&
                 currentStudent.unregisterFromEvent(selected.getId())) {
                 
-                userManager.saveUsers();
                 refreshEvents();
                 showSuccess("Success", "Successfully unregistered from the event!");
             } else {
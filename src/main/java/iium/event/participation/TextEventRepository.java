@@ -0,0 +1,88 @@
+package iium.event.participation;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores events in a comma-separated text file, one event per line.
+ * The whole file is rewritten on every change; participant lists are read on demand,
+ * see {@link EventFile}.
+ */
+public class TextEventRepository implements EventRepository {
+    private final EventFile file;
+    private final Map<String, Event> rows = new LinkedHashMap<>(); // Events as last written, by ID
+
+    public TextEventRepository(String path) {
+        this.file = new EventFile(Paths.get(path));
+    }
+
+    @Override
+    public synchronized List<Event> loadAll() {
+        rows.clear();
+        try {
+            for (Event event : file.read()) {
+                rows.putIfAbsent(event.getId(), event);
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading events: " + e.getMessage());
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    @Override
+    public synchronized void save(Event event) {
+        rows.put(event.getId(), event);
+        writeFile();
+    }
+
+    @Override
+    public synchronized void delete(String eventId) {
+        if (rows.remove(eventId) != null) {
+            writeFile();
+        }
+    }
+
+    @Override
+    public synchronized void deleteAll(Collection<String> eventIds) {
+        boolean removed = false;
+        for (String eventId : eventIds) {
+            removed |= rows.remove(eventId) != null;
+        }
+        if (removed) {
+            writeFile();
+        }
+    }
+
+    @Override
+    public synchronized void saveAll(List<Event> events) {
+        rows.clear();
+        for (Event event : events) {
+            rows.put(event.getId(), event);
+        }
+        writeFile();
+    }
+
+    @Override
+    public synchronized void storedElsewhere(Event event) {
+        event.setParticipantLoader(file::loadParticipants);
+        rows.put(event.getId(), event);
+    }
+
+    @Override
+    public synchronized void deletedElsewhere(String eventId) {
+        rows.remove(eventId);
+    }
+
+    private void writeFile() {
+        try {
+            file.write(rows.values());
+        } catch (IOException e) {
+            System.err.println("Error saving events: " + e.getMessage());
+        }
+    }
+}
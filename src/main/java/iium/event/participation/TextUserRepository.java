@@ -0,0 +1,88 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores users in a comma-separated text file, one user per line.
+ * The whole file is rewritten on every change.
+ */
+public class TextUserRepository implements UserRepository {
+    private final String path;
+    private final Map<String, User> rows = new LinkedHashMap<>(); // Users as last written, by username
+
+    public TextUserRepository(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public synchronized List<User> loadAll() {
+        rows.clear();
+        File file = new File(path);
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+
+        // Parsed in place from the file's bytes, one tokenizer for all lines
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            RecordTokenizer.forEachLine(in, fields -> {
+                User user = User.fromRecord(fields);
+                if (user != null) {
+                    rows.put(user.getUsername(), user);
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error loading users: " + e.getMessage());
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    @Override
+    public synchronized void save(User user) {
+        rows.put(user.getUsername(), user);
+        writeFile();
+    }
+
+    @Override
+    public synchronized void saveAll(List<User> users) {
+        rows.clear();
+        for (User user : users) {
+            rows.put(user.getUsername(), user);
+        }
+        writeFile();
+    }
+
+    @Override
+    public synchronized void storedElsewhere(User user) {
+        rows.put(user.getUsername(), user);
+    }
+
+    /**
+     * Rewrites the file through a temporary file, so a crash while writing leaves the old one,
+     * see {@link Durability}.
+     */
+    private void writeFile() {
+        Path target = Paths.get(path);
+        Path temp = Durability.tempFileFor(target);
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(RecordTokenizer.HEADER);
+                writer.newLine();
+                for (User user : rows.values()) {
+                    writer.write(user.toFileString());
+                    writer.newLine();
+                }
+            }
+            Durability.getInstance().replace(temp, target);
+        } catch (IOException e) {
+            System.err.println("Error saving users: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package iium.event.participation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel that runs tasks after a delay, used for registration cutoffs, event
+ * reminders and short UI delays.
+ * Time is cut into ticks of {@link #TICK_MILLIS}; a task goes into the bucket of the tick it is
+ * due in, modulo the wheel size, so scheduling and cancelling only link or unlink it. Each tick
+ * one bucket is walked; tasks due in a later turn of the wheel stay in it. This keeps hundreds
+ * of thousands of pending timers cheap, unlike java.util.Timer, which keeps a heap and starts
+ * a thread per timer object.
+ * Tasks run on the single "timer-wheel" daemon thread and must be short; hand longer work off.
+ */
+public final class TimerWheel {
+    static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 4096; // A power of two, so the bucket is tick & MASK
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static TimerWheel instance;
+
+    private final Timeout[] buckets = new Timeout[WHEEL_SIZE]; // Head of each bucket's list
+    private final long startNanos = System.nanoTime();
+    private long processedTick = -1; // Last tick whose bucket was walked
+    private int pending;
+    private Thread worker;
+
+    private TimerWheel() {
+    }
+
+    public static synchronized TimerWheel getInstance() {
+        if (instance == null) {
+            instance = new TimerWheel();
+        }
+        return instance;
+    }
+
+    /**
+     * A scheduled task, which can be cancelled until it runs.
+     */
+    public final class Timeout {
+        private final long deadlineTick;
+        private final Runnable task;
+        private Timeout previous;
+        private Timeout next;
+        private boolean linked;
+
+        private Timeout(long deadlineTick, Runnable task) {
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        /**
+         * Cancels the task.
+         * @return false if it has already run or been cancelled
+         */
+        public boolean cancel() {
+            synchronized (TimerWheel.this) {
+                if (!linked) {
+                    return false;
+                }
+                unlink(this);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Runs a task after a delay, rounded up to the next tick.
+     * @param delayMillis The delay; 0 or less runs the task on the next tick
+     * @return The handle to cancel the task with
+     */
+    public Timeout schedule(long delayMillis, Runnable task) {
+        synchronized (this) {
+            // The first tick that starts at or after the deadline, so a task never runs early
+            long tickNanos = TICK_MILLIS * 1_000_000;
+            long deadlineNanos = System.nanoTime() - startNanos + Math.max(0, delayMillis) * 1_000_000;
+            long tick = Math.max((deadlineNanos + tickNanos - 1) / tickNanos, processedTick + 1);
+            Timeout timeout = new Timeout(tick, task);
+            int bucket = (int) (tick & MASK);
+            timeout.next = buckets[bucket];
+            if (timeout.next != null) {
+                timeout.next.previous = timeout;
+            }
+            buckets[bucket] = timeout;
+            timeout.linked = true;
+            pending++;
+            if (worker == null) {
+                worker = new Thread(this::run, "timer-wheel");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            return timeout;
+        }
+    }
+
+    /**
+     * Gets the number of tasks that have not run or been cancelled yet.
+     */
+    public synchronized int getPendingCount() {
+        return pending;
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startNanos) / (TICK_MILLIS * 1_000_000);
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[(int) (timeout.deadlineTick & MASK)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.linked = false;
+        pending--;
+    }
+
+    private void run() {
+        List<Runnable> due = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                // Catches up on ticks missed while tasks ran or the machine slept
+                long now = currentTick();
+                if (now - processedTick > WHEEL_SIZE) {
+                    // More than a turn behind: one walk over every bucket finds all due tasks
+                    for (Timeout head : buckets) {
+                        for (Timeout timeout = head; timeout != null; ) {
+                            Timeout next = timeout.next;
+                            if (timeout.deadlineTick <= now) {
+                                unlink(timeout);
+                                due.add(timeout.task);
+                            }
+                            timeout = next;
+                        }
+                    }
+                    processedTick = now;
+                }
+                while (processedTick < now) {
+                    processedTick++;
+                    Timeout timeout = buckets[(int) (processedTick & MASK)];
+                    while (timeout != null) {
+                        Timeout next = timeout.next;
+                        if (timeout.deadlineTick <= processedTick) {
+                            unlink(timeout);
+                            due.add(timeout.task);
+                        }
+                        timeout = next;
+                    }
+                }
+            }
+            for (Runnable task : due) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Error in timer task: " + e.getMessage());
+                }
+            }
+            due.clear();
+            long sleepNanos = startNanos + (processedTick + 1) * TICK_MILLIS * 1_000_000 - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
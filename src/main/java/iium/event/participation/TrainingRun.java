@@ -0,0 +1,80 @@
+package iium.event.participation;
+
+import javafx.application.Platform;
+import javafx.stage.Stage;
+
+/**
+ * Scripted session used when building the kiosk image.
+ * Walks through login, both dashboards and one registration so the JVM sees the classes a
+ * real session loads, then exits. The class list it leaves behind becomes the AppCDS archive.
+ * Enabled with -Diium.training=true; run it in a scratch directory, it creates its own data.
+ */
+public class TrainingRun {
+    private static final String STUDENT_USERNAME = "training.student";
+    private static final String STUDENT_PASSWORD = "training";
+
+    private final Stage stage;
+    private final UserManager userManager;
+    private final EventManager eventManager;
+
+    private TrainingRun(Stage stage, UserManager userManager, EventManager eventManager) {
+        this.stage = stage;
+        this.userManager = userManager;
+        this.eventManager = eventManager;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("iium.training");
+    }
+
+    /**
+     * Runs the session on the JavaFX thread once users and events are loaded.
+     */
+    public static void start(Stage stage, UserManager userManager, EventManager eventManager) {
+        TrainingRun run = new TrainingRun(stage, userManager, eventManager);
+        userManager.whenLoaded().thenCombine(eventManager.whenLoaded(), (users, events) -> null)
+            .whenComplete((ignored, error) -> Platform.runLater(() -> {
+                try {
+                    if (error != null) {
+                        throw new IllegalStateException("Data did not load", error);
+                    }
+                    run.run();
+                    System.out.println("Training run finished");
+                } catch (RuntimeException e) {
+                    System.err.println("Training run failed: " + e.getMessage());
+                } finally {
+                    Platform.exit();
+                }
+            }));
+    }
+
+    private void run() {
+        User admin = userManager.loginUser("admin", "admin123");
+        if (admin == null) {
+            throw new IllegalStateException("Default admin account is missing");
+        }
+        show(new AdminDashboard(stage, admin, userManager, eventManager));
+
+        Event event = new Event(null, "Training Session", "Kiosk warm-up event", "2030-01-01 09:00",
+            "Main Auditorium", 50, admin.getUsername());
+        eventManager.addEvent(event);
+
+        // Returns null when the account is left over from an earlier run, which is fine
+        userManager.registerUser(STUDENT_USERNAME, STUDENT_PASSWORD, "Student", "Training Student", "0100000000", "Female");
+        User user = userManager.loginUser(STUDENT_USERNAME, STUDENT_PASSWORD);
+        if (!(user instanceof Student)) {
+            throw new IllegalStateException("Training student could not log in");
+        }
+        show(new StudentDashboard(stage, user, userManager, eventManager));
+        if (eventManager.registerParticipant(event.getId(), user.getUsername())) {
+            ((Student) user).registerForEvent(event.getId());
+        }
+        show(new StudentDashboard(stage, user, userManager, eventManager));
+    }
+
+    private void show(BaseDashboard dashboard) {
+        stage.getScene().setRoot(dashboard.getRoot());
+        stage.getScene().getRoot().applyCss();
+        stage.getScene().getRoot().layout();
+    }
+}
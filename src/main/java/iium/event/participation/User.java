@@ -5,6 +5,9 @@ package iium.event.participation;
  * Stores common user information
  */
 public abstract class User {
+    public static final String ADMIN_ROLE = "Admin";
+    public static final String STUDENT_ROLE = "Student";
+
     protected String username;
     protected String password; 
     protected String name;
@@ -81,17 +84,65 @@ public abstract class User {
     }
 
     
+    /**
+     * Copies the profile of another copy of the same user, e.g. one changed by another app instance.
+     * @param other The user to copy from
+     */
+    public void copyProfileFrom(User other) {
+        this.password = other.password;
+        this.name = other.name;
+        this.phoneNumber = other.phoneNumber;
+        this.gender = other.gender;
+        this.email = other.email;
+    }
+
     /**
      * Formats user data for file storage.
      * @return A string representation of the user for saving to file
      */
     public String toFileString() {
-        return String.format("%s,%s,%s,%s,%s", 
-            username, 
-            password, 
-            getClass().getSimpleName(),
-            name,
-            email);
+        return String.join(",",
+            RecordTokenizer.quote(username),
+            RecordTokenizer.quote(password),
+            (this instanceof Admin) ? ADMIN_ROLE : STUDENT_ROLE,
+            RecordTokenizer.quote(name),
+            RecordTokenizer.quote(phoneNumber),
+            RecordTokenizer.quote(gender),
+            RecordTokenizer.quote(email));
+    }
+
+    /**
+     * Parses a line written by {@link #toFileString()}.
+     * @param line The line read from file
+     * @return The Admin or Student described by the line, or null if the line is invalid
+     */
+    public static User fromFileString(String line) {
+        return fromRecord(RecordTokenizer.of(line));
+    }
+
+    /**
+     * Parses the fields of a line written by {@link #toFileString()}.
+     * @param fields The tokenizer positioned at the start of the line
+     * @return The Admin or Student described by the line, or null if the line is invalid
+     */
+    public static User fromRecord(RecordTokenizer fields) {
+        try {
+            StringDictionary dictionary = StringDictionary.getInstance();
+            String username = fields.next();
+            String password = fields.next();
+            String userType = fields.next();
+            String name = fields.next();
+            String phoneNumber = fields.next();
+            String gender = dictionary.encode(fields.next());
+            String email = fields.next();
+
+            if (ADMIN_ROLE.equals(userType)) {
+                return new Admin(username, password, name, phoneNumber, gender, email, ADMIN_ROLE);
+            }
+            return new Student(username, password, name, phoneNumber, gender, email, STUDENT_ROLE);
+        } catch (IllegalStateException e) {
+            return null; // Not all fields are present
+        }
     }
 
     @Override
@@ -0,0 +1,74 @@
+package iium.event.participation;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense integer IDs (0, 1, 2, ...) to usernames.
+ * UserManager registers every user at load time; events store participants by these IDs
+ * and only turn them back into usernames for display and export.
+ */
+public final class UserIdRegistry {
+    private static final UserIdRegistry instance = new UserIdRegistry();
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] usernames = new String[64];
+    private int nextId;
+
+    private UserIdRegistry() {
+    }
+
+    public static UserIdRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the ID for a username, assigning the next free ID on first use.
+     * @param username The username
+     * @return The dense ID of the user
+     */
+    public int idOf(String username) {
+        Integer id = ids.get(username);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(username);
+            if (id != null) {
+                return id;
+            }
+            int assigned = nextId++;
+            String[] names = usernames;
+            if (assigned == names.length) {
+                names = Arrays.copyOf(names, names.length * 2);
+            }
+            names[assigned] = username;
+            usernames = names;
+            ids.put(names[assigned], assigned);
+            return assigned;
+        }
+    }
+
+    /**
+     * Returns the ID for a username without assigning one.
+     * @return The ID, or -1 if the username has never been seen
+     */
+    public int find(String username) {
+        Integer id = ids.get(username);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the username for an ID handed out by {@link #idOf(String)}.
+     */
+    public String usernameOf(int id) {
+        return usernames[id];
+    }
+
+    /**
+     * Number of IDs assigned so far. Every ID is below this value.
+     */
+    public synchronized int size() {
+        return nextId;
+    }
+}
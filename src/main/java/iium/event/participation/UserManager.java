@@ -1,96 +1,172 @@
 package iium.event.participation;
 
-import java.io.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 /**
  * Manages user accounts (registration, login, loading/saving).
  */
 public class UserManager {
-    private static final String USER_FILE = "users.txt"; // File to store user data
+    private final UserRepository repository; // Where user data is stored
     private final List<User> users; // In-memory list of users
+    private final Map<String, User> usersByName; // Username index over the same users
+    private final PrefixIndex searchIndex; // Usernames and names, built on the first search, see suggestUsers()
+    private boolean searchIndexBuilt;
+    private final ChangeLog changeLog; // Shares changes with other app instances
+    private final CompletableFuture<Void> loaded; // Completes once the users have been loaded
+    private final boolean replica; // Writes go to the primary, see ReplicaClient
     private static UserManager instance;
 
     private UserManager() {
+        this(Repositories.createUserRepository());
+    }
+
+    private UserManager(UserRepository repository) {
+        this.repository = repository;
         this.users = new ArrayList<>();
-        loadUsers(); // Load existing users when UserManager is created
+        this.usersByName = new HashMap<>();
+        this.searchIndex = new PrefixIndex();
+        this.loaded = new CompletableFuture<>();
+        this.replica = ReplicaClient.isEnabled();
+        // Created before loading, so no change logged after the load is missed
+        this.changeLog = ChangeLog.getInstance();
+        changeLog.addListener(new ChangeLog.Listener() {
+            @Override
+            public void apply(Change change) {
+                if (change.getType() == Change.Type.USER_SAVED) {
+                    User user = User.fromFileString(change.getData());
+                    if (user != null) {
+                        mergeUser(user);
+                    }
+                }
+            }
+
+            @Override
+            public void reload() {
+                reloadUsers();
+            }
+        });
     }
     
     public static synchronized UserManager getInstance() {
         if (instance == null) {
             instance = new UserManager();
+            instance.loadUsers(); // Load existing users when UserManager is created
         }
         return instance;
     }
 
     /**
-     * Loads users from the text file into the in-memory list.
-     * Creates the file if it doesn't exist.
+     * Creates the UserManager and loads the users on the given executor.
+     * Calls made before loading finishes wait for it.
+     * @param executor The executor to load on
+     * @return The UserManager, possibly still loading
      */
-    private void loadUsers() {
-        File file = new File(USER_FILE);
-        if (!file.exists()) {
-            try {
-                file.createNewFile();
-                // Create a default admin user if the file is newly created
-                users.add(new Admin("admin", "admin123", "System Administrator", "0123456789", "Male", "admin@iium.edu.my", "Admin"));
-                saveUsers();
-                return;
-            } catch (IOException e) {
-                System.err.println("Error creating users file: " + e.getMessage());
-                return;
-            }
+    public static synchronized UserManager loadInBackground(Executor executor) {
+        if (instance == null) {
+            instance = new UserManager();
+            executor.execute(instance::loadUsers);
         }
+        return instance;
+    }
+
+    /**
+     * Completes once the users have been loaded and logins can be checked.
+     */
+    public CompletionStage<Void> whenLoaded() {
+        return loaded.minimalCompletionStage();
+    }
 
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] parts = line.split(",");
-                if (parts.length < 5) continue; // Skip invalid lines
+    public boolean isLoaded() {
+        return loaded.isDone();
+    }
 
-                if (parts.length < 7) continue; // Ensure all fields are present
-                
-                String username = parts[0];
-                String password = parts[1];
-                String userType = parts[2];
-                String name = parts[3];
-                String phoneNumber = parts[4];
-                String gender = parts[5];
-                String email = parts[6];
-
-                if ("Admin".equals(userType)) {
-                    users.add(new Admin(username, password, name, phoneNumber, gender, email, "Admin"));
-                } else {
-                    users.add(new Student(username, password, name, phoneNumber, gender, email, "Student"));
+    /**
+     * Loads the users now if the background load has not started yet.
+     * Must be called while holding the lock, so a caller never sees a partially loaded list.
+     */
+    private void ensureLoaded() {
+        if (!loaded.isDone()) {
+            loadUsers();
+        }
+    }
+
+    /**
+     * Loads users from the repository into the in-memory list.
+     * Creates the default admin account if there are no users yet.
+     */
+    private synchronized void loadUsers() {
+        if (loaded.isDone()) {
+            return;
+        }
+        try {
+            for (User user : repository.loadAll()) {
+                if (!usersByName.containsKey(user.getUsername())) {
+                    addUser(user);
                 }
             }
-        } catch (FileNotFoundException e) {
+            // A replica gets the primary's default admin once it has connected
+            if (users.isEmpty() && !replica) {
+                addUser(new Admin("admin", "admin123", "System Administrator", "0123456789", "Male", "admin@iium.edu.my", User.ADMIN_ROLE));
+                repository.saveAll(users);
+            }
+            loaded.complete(null);
+        } catch (RuntimeException e) {
             System.err.println("Error loading users: " + e.getMessage());
+            loaded.completeExceptionally(e);
         }
     }
 
     /**
-     * Saves the current list of users to the text file.
+     * Saves the current list of users.
      */
     public void saveUsers() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(USER_FILE))) {
-            for (User user : users) {
-                writer.println(String.format("%s,%s,%s,%s,%s,%s,%s", 
-                    user.getUsername(), 
-                    user.getPassword(),
-                    (user instanceof Admin) ? "Admin" : "Student",
-                    user.getName(),
-                    user.getPhoneNumber(),
-                    user.getGender(),
-                    user.getEmail()
-                ));
+        if (replica) {
+            for (User user : getAllUsers()) {
+                saveUser(user);
+            }
+            return;
+        }
+        changeLog.write(changes -> {
+            synchronized (this) {
+                ensureLoaded();
+                repository.saveAll(users);
+                for (User user : users) {
+                    changes.add(Change.Type.USER_SAVED, user.getUsername(), user.toFileString());
+                }
+                return null;
             }
-        } catch (IOException e) {
-            System.err.println("Error saving users: " + e.getMessage());
+        });
+    }
+
+    /**
+     * Saves the changes made to a single user, e.g. after a password change.
+     * @param user The user to save
+     */
+    public void saveUser(User user) {
+        if (replica) {
+            if (!forward(ReplicationServer.CHANGED_USER, user)) {
+                System.err.println("Error saving user " + user.getUsername() + ": rejected by the primary");
+            }
+            return;
         }
+        changeLog.write(changes -> {
+            synchronized (this) {
+                ensureLoaded();
+                repository.save(user);
+                if (searchIndexBuilt) {
+                    indexForSearch(user);
+                }
+                changes.add(Change.Type.USER_SAVED, user.getUsername(), user.toFileString());
+                return null;
+            }
+        });
     }
 
     /**
@@ -104,28 +180,144 @@ public class UserManager {
      * @return The newly created User object if registration was successful, null if the username is already taken
      */
     public User registerUser(String username, String password, String userType, String name, String phoneNumber, String gender) {
-        // Check if username is already taken
-        if (findUser(username).isPresent()) {
-            return null;
+        if (replica) {
+            synchronized (this) {
+                ensureLoaded();
+                if (findUser(username).isPresent()) {
+                    return null;
+                }
+            }
+            User newUser = createUser(username, password, userType, name, phoneNumber, gender);
+            // The primary's change has been merged by the time it answers
+            return forward(ReplicationServer.NEW_USER, newUser) ? findUser(username).orElse(null) : null;
         }
-        
+        // Users registered at other booths are applied first, so a taken username is always seen
+        return changeLog.write(changes -> {
+            synchronized (this) {
+                ensureLoaded();
+                // Check if username is already taken
+                if (findUser(username).isPresent()) {
+                    return null;
+                }
+                
+                User newUser = createUser(username, password, userType, name, phoneNumber, gender);
+                addUser(newUser);
+                repository.save(newUser);
+                changes.add(Change.Type.USER_SAVED, username, newUser.toFileString());
+                return newUser;
+            }
+        });
+    }
+
+    private static User createUser(String username, String password, String userType, String name, String phoneNumber, String gender) {
         // Generate email from username
         String email = username + "@student.iium.edu.my";
-        if ("Admin".equalsIgnoreCase(userType)) {
+        if (User.ADMIN_ROLE.equalsIgnoreCase(userType)) {
             email = username + "@iium.edu.my";
         }
         
         // Create the appropriate user type
-        User newUser;
-        if ("Admin".equalsIgnoreCase(userType)) {
-            newUser = new Admin(username, password, name, phoneNumber, gender, email, "Admin");
+        if (User.ADMIN_ROLE.equalsIgnoreCase(userType)) {
+            return new Admin(username, password, name, phoneNumber, gender, email, User.ADMIN_ROLE);
+        }
+        return new Student(username, password, name, phoneNumber, gender, email, User.STUDENT_ROLE);
+    }
+
+    /**
+     * Sends a user write to the primary, see {@link ReplicationServer}. Must not be called while
+     * holding the lock: the primary's answer arrives after its change has been merged here.
+     * @param kind {@link ReplicationServer#NEW_USER} or {@link ReplicationServer#CHANGED_USER}
+     * @return Whether the primary accepted the write
+     */
+    private boolean forward(String kind, User user) {
+        ReplicaClient client = EventManager.getInstance().getReplicaClient();
+        return client.forward(Change.Type.USER_SAVED, user.getUsername(), kind + "," + user.toFileString());
+    }
+
+    /**
+     * Runs a user write sent by a replica, on the primary.
+     * @param kind {@link ReplicationServer#NEW_USER} or {@link ReplicationServer#CHANGED_USER}
+     * @param stored The user as written by the replica
+     * @return Whether the write was accepted: a new username must be free and a changed one known
+     */
+    boolean runReplicaWrite(String kind, User stored) {
+        if (ReplicationServer.NEW_USER.equals(kind)) {
+            return registerUser(stored.getUsername(), stored.getPassword(), stored.getRole(), stored.getName(),
+                stored.getPhoneNumber(), stored.getGender()) != null;
+        }
+        User existing;
+        synchronized (this) {
+            ensureLoaded();
+            existing = usersByName.get(stored.getUsername());
+            if (existing == null) {
+                return false;
+            }
+            existing.copyProfileFrom(stored);
+        }
+        saveUser(existing);
+        return true;
+    }
+
+    /**
+     * Applies a user stored by the primary, on a replica, see {@link ReplicaClient}.
+     */
+    void applyPrimaryChange(Change change) {
+        User user = User.fromFileString(change.getData());
+        if (user != null) {
+            mergeUser(user);
+        }
+    }
+
+    /**
+     * Applies a user stored by another app instance, see {@link ChangeLog}.
+     * A known user is updated in place, so a logged-in user object stays current.
+     */
+    private synchronized void mergeUser(User stored) {
+        ensureLoaded();
+        User existing = usersByName.get(stored.getUsername());
+        if (existing != null) {
+            existing.copyProfileFrom(stored);
+            if (searchIndexBuilt) {
+                indexForSearch(existing);
+            }
+            repository.storedElsewhere(existing);
         } else {
-            newUser = new Student(username, password, name, phoneNumber, gender, email, "Student");
+            addUser(stored);
+            repository.storedElsewhere(stored);
         }
-        
-        users.add(newUser);
-        saveUsers();
-        return newUser;
+    }
+
+    /**
+     * Merges all stored users into memory, after changes were missed, see {@link ChangeLog}, or
+     * on a replica after a snapshot from the primary.
+     */
+    synchronized void reloadUsers() {
+        for (User user : repository.loadAll()) {
+            mergeUser(user);
+        }
+    }
+
+    /**
+     * Adds a user to the list and indexes, and assigns its dense ID.
+     */
+    private synchronized void addUser(User user) {
+        users.add(user);
+        usersByName.put(user.getUsername(), user);
+        if (searchIndexBuilt) {
+            indexForSearch(user);
+        }
+        UserIdRegistry.getInstance().idOf(user.getUsername());
+    }
+
+    /**
+     * Gets the dense integer ID of a user, as used for event participants.
+     * 
+     * @param username The username
+     * @return The ID, or -1 if the username is unknown
+     */
+    public synchronized int getUserId(String username) {
+        ensureLoaded();
+        return usersByName.containsKey(username) ? UserIdRegistry.getInstance().find(username) : -1;
     }
 
     /**
@@ -135,7 +327,8 @@ public class UserManager {
      * @param password The password
      * @return The User object if login is successful, null otherwise
      */
-    public User loginUser(String username, String password) {
+    public synchronized User loginUser(String username, String password) {
+        ensureLoaded();
         return findUser(username, password).orElse(null);
     }
 
@@ -145,10 +338,8 @@ public class UserManager {
      * @param username The username to search for
      * @return An Optional containing the User if found, empty otherwise
      */
-    private Optional<User> findUser(String username) {
-        return users.stream()
-                   .filter(user -> user.getUsername().equals(username))
-                   .findFirst();
+    private synchronized Optional<User> findUser(String username) {
+        return Optional.ofNullable(usersByName.get(username));
     }
 
     /**
@@ -158,10 +349,9 @@ public class UserManager {
      * @param password The password
      * @return An Optional containing the User if found with matching credentials, empty otherwise
      */
-    private Optional<User> findUser(String username, String password) {
-        return users.stream()
-                   .filter(user -> user.getUsername().equals(username) && user.getPassword().equals(password))
-                   .findFirst();
+    private synchronized Optional<User> findUser(String username, String password) {
+        return findUser(username)
+                   .filter(user -> user.getPassword().equals(password));
     }
 
     /**
@@ -169,7 +359,38 @@ public class UserManager {
      * 
      * @return A list of all users
      */
-    public List<User> getAllUsers() {
+    public synchronized List<User> getAllUsers() {
+        ensureLoaded();
         return new ArrayList<>(users);
     }
+
+    /**
+     * Suggests users whose username or a word of whose name starts with the typed text, for
+     * type-ahead lookup. Takes microseconds however many users there are, see {@link PrefixIndex}.
+     * 
+     * @param prefix The text typed so far
+     * @param limit The most users to return
+     * @return The matching users
+     */
+    public synchronized List<User> suggestUsers(String prefix, int limit) {
+        ensureLoaded();
+        if (!searchIndexBuilt) {
+            for (User user : users) {
+                indexForSearch(user);
+            }
+            searchIndexBuilt = true;
+        }
+        List<User> suggestions = new ArrayList<>();
+        for (String username : searchIndex.complete(prefix, limit)) {
+            User user = usersByName.get(username);
+            if (user != null) {
+                suggestions.add(user);
+            }
+        }
+        return suggestions;
+    }
+
+    private void indexForSearch(User user) {
+        searchIndex.put(user.getUsername(), user.getUsername(), user.getName());
+    }
 }
@@ -0,0 +1,34 @@
+package iium.event.participation;
+
+import java.util.List;
+
+/**
+ * Storage for user accounts.
+ */
+public interface UserRepository {
+    /**
+     * Loads all stored users in their stored order.
+     * @return The users, empty if nothing has been stored yet
+     */
+    List<User> loadAll();
+
+    /**
+     * Inserts a new user or replaces the stored copy of an existing one.
+     * @param user The user to store
+     */
+    void save(User user);
+
+    /**
+     * Replaces everything stored with the given users.
+     * @param users All users, in order
+     */
+    void saveAll(List<User> users);
+
+    /**
+     * Takes note of a user that another app instance has stored, see {@link ChangeLog}.
+     * Nothing is written. The default does nothing, for backends that cannot be shared.
+     * @param user The stored user
+     */
+    default void storedElsewhere(User user) {
+    }
+}
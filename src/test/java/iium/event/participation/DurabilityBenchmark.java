@@ -0,0 +1,76 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Save throughput of each {@link Durability} policy.
+ * Saves a generated events file again and again, as every registration does with text
+ * storage, for a few seconds per policy, and compares with rewriting the file in place
+ * without a temporary file or fsync, as users.txt was saved before.
+ * Run from a directory on the disk to measure, without JavaFX on the class path:
+ * java -cp target/classes:target/test-classes iium.event.participation.DurabilityBenchmark 500
+ */
+public class DurabilityBenchmark {
+    private static final long RUN_MS = 3000;
+
+    public static void main(String[] args) throws IOException {
+        int eventCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        byte[] content = generateContent(eventCount);
+        Path directory = Files.createTempDirectory(Path.of("").toAbsolutePath(), "iium-durability");
+        Path file = directory.resolve("events.txt");
+        try {
+            System.out.printf("Durability benchmark: %d events, %d KB per save, %d ms per policy%n", eventCount,
+                content.length >> 10, RUN_MS);
+            report("in place, no fsync (before)", () -> {
+                try (OutputStream out = new FileOutputStream(file.toFile())) {
+                    out.write(content);
+                }
+            });
+            for (Durability.Policy policy : Durability.Policy.values()) {
+                Durability durability = new Durability(policy, 1000, 32);
+                report(policy.toString(), () -> {
+                    Path temp = Durability.tempFileFor(file);
+                    Files.write(temp, content);
+                    durability.replace(temp, file);
+                });
+                durability.flush();
+            }
+        } finally {
+            Files.deleteIfExists(Durability.tempFileFor(file));
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private interface Save {
+        void run() throws IOException;
+    }
+
+    private static void report(String name, Save save) throws IOException {
+        int saves = 0;
+        long start = System.nanoTime();
+        long end = start + RUN_MS * 1_000_000;
+        while (System.nanoTime() < end) {
+            save.run();
+            saves++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %-30s %8.0f saves/s  %7.2f ms per save%n", name, saves / seconds, seconds * 1000 / saves);
+    }
+
+    private static byte[] generateContent(int eventCount) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < eventCount; i++) {
+            Event event = new Event(String.format("EVT%05d", i), "Event " + i, "Generated event number " + i,
+                "2030-01-01 09:00", "Main Auditorium", 200, "admin");
+            for (int p = 0; p < 50; p++) {
+                event.registerParticipant("student" + (i * 7 + p) % 5_000);
+            }
+            content.append(event.toFileString()).append(System.lineSeparator());
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,104 @@
+package iium.event.participation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap held by loaded users and events with and without {@link StringDictionary}.
+ * Parses generated users.txt and events.txt lines the way the loaders do, once as they are and
+ * once giving every object its own copy of each dictionary field, as loading did before.
+ * Reports the heap retained by each set after a full GC, next to the dictionary's own estimate.
+ * Run without JavaFX on the class path, with a fixed heap so the measurements are stable:
+ * java -Xms1g -Xmx1g -cp target/classes:target/test-classes iium.event.participation.FootprintBenchmark 200000 20000
+ */
+public class FootprintBenchmark {
+    private static final String[] GENDERS = {"Male", "Female"};
+    private static final int LOCATIONS = 40;
+    private static final int ORGANIZERS = 25;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int eventCount = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        List<String> userLines = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            userLines.add(new Student("student" + i, "password" + i, "Student " + i, "01" + (10_000_000 + i),
+                GENDERS[i % GENDERS.length], "student" + i + "@live.iium.edu.my", User.STUDENT_ROLE).toFileString());
+        }
+        List<String> eventLines = new ArrayList<>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            eventLines.add(new Event(String.format("EVT%07d", i), "Event " + i, "Generated event number " + i,
+                String.format("2030-%02d-%02d 09:00", i % 12 + 1, i % 28 + 1), "Venue " + i % LOCATIONS,
+                200, "organizer" + i % ORGANIZERS).toMetadataString());
+        }
+        System.out.printf("Footprint benchmark: %d users, %d events%n", userCount, eventCount);
+
+        load(userLines, eventLines, false); // Also warms up, so class loading and JIT are not measured
+        System.out.println("  " + StringDictionary.getInstance().footprintReport());
+        long withDictionary = Long.MAX_VALUE;
+        long withoutDictionary = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            withDictionary = Math.min(withDictionary, retained(userLines, eventLines, false));
+            withoutDictionary = Math.min(withoutDictionary, retained(userLines, eventLines, true));
+        }
+        System.out.printf("  retained without dictionary %8d KB%n", withoutDictionary / 1024);
+        System.out.printf("  retained with dictionary    %8d KB  (%.1f%% less)%n", withDictionary / 1024,
+            100.0 * (withoutDictionary - withDictionary) / withoutDictionary);
+    }
+
+    /**
+     * Loads the lines and measures the heap they hold after a full GC.
+     */
+    private static long retained(List<String> userLines, List<String> eventLines, boolean copy) throws InterruptedException {
+        long base = usedHeap();
+        List<Object> loaded = load(userLines, eventLines, copy);
+        long used = usedHeap() - base;
+        if (loaded.size() != userLines.size() + eventLines.size()) {
+            throw new IllegalStateException("Lines were skipped");
+        }
+        return used;
+    }
+
+    /**
+     * Parses the lines the way the loaders do.
+     * @param copy Whether to replace each object with one holding its own copies of the
+     * dictionary fields, as loading did before the dictionary
+     */
+    private static List<Object> load(List<String> userLines, List<String> eventLines, boolean copy) {
+        List<Object> loaded = new ArrayList<>(userLines.size() + eventLines.size());
+        for (String line : userLines) {
+            User user = User.fromFileString(line);
+            loaded.add(copy ? copyOf(user) : user);
+        }
+        for (String line : eventLines) {
+            Event event = Event.fromFileString(line);
+            loaded.add(copy ? copyOf(event) : event);
+        }
+        return loaded;
+    }
+
+    /**
+     * A user with its own copies of the dictionary fields and role.
+     */
+    private static User copyOf(User user) {
+        return new Student(user.getUsername(), user.getPassword(), user.getName(), user.getPhoneNumber(),
+            new String(user.getGender()), user.getEmail(), new String(user.getRole()));
+    }
+
+    /**
+     * An event with its own copies of the dictionary fields.
+     */
+    private static Event copyOf(Event event) {
+        return new Event(event.getId(), event.getTitle(), event.getDescription(), event.getDate(),
+            new String(event.getLocation()), event.getCapacity(), new String(event.getOrganizerId()));
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,116 @@
+package iium.event.participation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Replay, repair and compaction of {@link KeyValueStore}.
+ */
+class KeyValueStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornBatchIsCutOffOnReopen() throws IOException {
+        Path path = directory.resolve("store.log");
+        long committed;
+        try (KeyValueStore store = KeyValueStore.open(path)) {
+            store.begin().put("a", "1").put("b", "2").commit();
+            committed = Files.size(path);
+            store.begin().put("c", "3").delete("a").commit();
+        }
+        // A crash in the middle of the second batch
+        truncate(path, committed + (Files.size(path) - committed) / 2);
+
+        try (KeyValueStore store = KeyValueStore.open(path)) {
+            assertEquals("1", store.get("a"));
+            assertEquals("2", store.get("b"));
+            assertNull(store.get("c"));
+            assertEquals(committed, Files.size(path));
+
+            store.begin().put("d", "4").commit();
+        }
+        try (KeyValueStore store = KeyValueStore.open(path)) {
+            assertEquals(List.of("a", "b", "d"), store.keys(""));
+            assertEquals("4", store.get("d"));
+        }
+    }
+
+    @Test
+    void batchWithBadCrcIsCutOffWithEverythingAfterIt() throws IOException {
+        Path path = directory.resolve("store.log");
+        long committed;
+        try (KeyValueStore store = KeyValueStore.open(path)) {
+            store.begin().put("a", "1").commit();
+            committed = Files.size(path);
+            store.begin().put("b", "value of b").commit();
+            store.begin().put("c", "3").commit();
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        int value = indexOf(bytes, "value of b");
+        bytes[value] = 'V';
+        Files.write(path, bytes);
+
+        try (KeyValueStore store = KeyValueStore.open(path)) {
+            assertEquals("1", store.get("a"));
+            assertNull(store.get("b"));
+            assertNull(store.get("c"), "Batches after a corrupt one are not trusted either");
+            assertEquals(committed, Files.size(path));
+        }
+    }
+
+    @Test
+    void compactionKeepsLiveKeys() throws IOException {
+        Path path = directory.resolve("store.log");
+        String large = "x".repeat(4096);
+        long written = 0;
+        try (KeyValueStore store = KeyValueStore.open(path)) {
+            store.begin().put("kept", "first").put("deleted", "gone soon").commit();
+            // Enough superseded data to pass the 1 MB compaction threshold
+            for (int i = 0; i < 400; i++) {
+                store.begin().put("overwritten", large + i).commit();
+                written += large.length();
+            }
+            store.begin().delete("deleted").put("kept", "second").commit();
+            assertTrue(Files.size(path) < written / 2, "The log should have been compacted");
+            assertFalse(Files.exists(path.resolveSibling("store.log.compact")));
+
+            assertEquals("second", store.get("kept"));
+            assertEquals(large + 399, store.get("overwritten"));
+            assertNull(store.get("deleted"));
+            store.begin().put("after", "compaction").commit();
+        }
+        try (KeyValueStore store = KeyValueStore.open(path)) {
+            assertEquals(List.of("kept", "overwritten", "after"), store.keys(""));
+            assertEquals("second", store.get("kept"));
+            assertEquals(large + 399, store.get("overwritten"));
+            assertEquals("compaction", store.get("after"));
+        }
+    }
+
+    private static void truncate(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static int indexOf(byte[] bytes, String text) {
+        byte[] target = text.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i + target.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        throw new AssertionError(text + " not found");
+    }
+}
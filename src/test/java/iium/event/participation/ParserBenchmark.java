@@ -0,0 +1,141 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load benchmark for the stored line formats.
+ * Writes generated events.txt and users.txt files and reads them with the String.split
+ * parsing the loaders used before RecordTokenizer, and with the current loaders.
+ * Run without JavaFX on the class path:
+ * java -cp target/classes:target/test-classes iium.event.participation.ParserBenchmark 1000000
+ * Add -verbose:gc to compare how much garbage each path leaves.
+ */
+public class ParserBenchmark {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path directory = Files.createTempDirectory("iium-parser");
+        Path events = directory.resolve("events.txt");
+        Path users = directory.resolve("users.txt");
+        try {
+            writeFiles(events, users, lines);
+            System.out.printf("Parser benchmark: %d lines, events %d MB, users %d MB, best of %d runs%n", lines,
+                Files.size(events) >> 20, Files.size(users) >> 20, RUNS);
+            report("events, split per line", () -> splitEvents(events));
+            report("events, tokenizer per line", () -> tokenizedEvents(events));
+            report("events, EventFile (participants left in file)", () -> new EventFile(events).read().size());
+            report("users, split per line", () -> splitUsers(users));
+            report("users, TextUserRepository", () -> new TextUserRepository(users.toString()).loadAll().size());
+        } finally {
+            Files.deleteIfExists(events);
+            Files.deleteIfExists(users);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private interface Run {
+        int run() throws IOException;
+    }
+
+    private static void report(String name, Run run) throws IOException {
+        long best = Long.MAX_VALUE;
+        int count = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            count = run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-48s %8.1f ms  (%d records)%n", name, best / 1e6, count);
+    }
+
+    private static void writeFiles(Path events, Path users, int lines) throws IOException {
+        String[] locations = {"Main Auditorium", "KICT Lab 1", "Cultural Centre", "Sports Complex", "Library Hall"};
+        try (BufferedWriter eventOut = Files.newBufferedWriter(events, StandardCharsets.UTF_8);
+             BufferedWriter userOut = Files.newBufferedWriter(users, StandardCharsets.UTF_8)) {
+            eventOut.write(RecordTokenizer.HEADER);
+            eventOut.newLine();
+            userOut.write(RecordTokenizer.HEADER);
+            userOut.newLine();
+            for (int i = 0; i < lines; i++) {
+                Event event = new Event(String.format("EVT%07d", i), "Event " + i, "Generated event number " + i,
+                    String.format("2030-%02d-%02d 09:00", i % 12 + 1, i % 28 + 1), locations[i % locations.length],
+                    50 + i % 200, "admin");
+                for (int p = 0; p < 5; p++) {
+                    event.registerParticipant("student" + (i * 7 + p) % 50_000);
+                }
+                eventOut.write(event.toFileString());
+                eventOut.newLine();
+                User user = new Student("student" + i, "password" + i, "Student " + i, "01" + (10_000_000 + i),
+                    i % 2 == 0 ? "Male" : "Female", "student" + i + "@live.iium.edu.my", "Student");
+                userOut.write(user.toFileString());
+                userOut.newLine();
+            }
+        }
+    }
+
+    /**
+     * Events parsed the way Event.fromFileString did before RecordTokenizer.
+     */
+    private static int splitEvents(Path path) throws IOException {
+        List<Event> events = new ArrayList<>();
+        StringDictionary dictionary = StringDictionary.getInstance();
+        UserIdRegistry registry = UserIdRegistry.getInstance();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",", -1);
+                if (parts.length < 8 || Integer.parseInt(parts[6]) < 0) {
+                    continue;
+                }
+                Event event = new Event(parts[0], parts[1], parts[2], parts[3], dictionary.encode(parts[4]),
+                    Integer.parseInt(parts[5]), dictionary.encode(parts[7]));
+                IntSet participants = new IntSet();
+                for (int i = 9; i < parts.length; i++) {
+                    participants.add(registry.idOf(parts[i]));
+                }
+                events.add(event);
+            }
+        }
+        return events.size();
+    }
+
+    private static int tokenizedEvents(Path path) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Event event = Event.fromFileString(line);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        }
+        return events.size();
+    }
+
+    /**
+     * Users parsed the way User.fromFileString did before RecordTokenizer.
+     */
+    private static int splitUsers(Path path) throws IOException {
+        List<User> users = new ArrayList<>();
+        StringDictionary dictionary = StringDictionary.getInstance();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length < 7) {
+                    continue;
+                }
+                users.add(new Student(parts[0], parts[1], parts[3], parts[4],
+                    dictionary.encode(parts[5]), parts[6], User.STUDENT_ROLE));
+            }
+        }
+        return users.size();
+    }
+}
@@ -0,0 +1,97 @@
+package iium.event.participation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Quoting in {@link RecordTokenizer}, and reading files written before quoting existed.
+ */
+class RecordTokenizerTest {
+    private static final List<String> FIELDS = List.of(
+        "plain", "", "a,b", "say \"hi\"", "\"leading quote", "line one\nline two", "windows\r\nbreak",
+        "back\\slash, then a comma", "trailing\\", "\"", ",", "ünïcödé, too");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void quotedFieldsRoundTrip() {
+        String line = FIELDS.stream().map(RecordTokenizer::quote).collect(Collectors.joining(","));
+        assertFalse(line.contains("\n") || line.contains("\r"), "A record must stay on one line");
+        assertEquals(FIELDS, readAll(RecordTokenizer.of(line)));
+    }
+
+    @Test
+    void skipPassesOverQuotedFields() {
+        RecordTokenizer fields = RecordTokenizer.of(RecordTokenizer.quote("a,\"b\"") + ",42,last");
+        fields.skip();
+        assertEquals(42, fields.nextInt());
+        assertEquals("last", fields.next());
+        assertFalse(fields.hasNext());
+    }
+
+    @Test
+    void fileWithHeaderIsReadWithQuoting() throws IOException {
+        String file = RecordTokenizer.HEADER + "\r\n"
+            + FIELDS.stream().map(RecordTokenizer::quote).collect(Collectors.joining(",")) + "\r\n";
+        List<List<String>> lines = readLines(file);
+        assertEquals(List.of(FIELDS), lines);
+    }
+
+    @Test
+    void fileWithoutHeaderIsReadAsItIs() throws IOException {
+        List<List<String>> lines = readLines("EVT1,\"Big\" Night,a \"\"quoted\"\" word\n\"a,b\",c\\n\n");
+        assertEquals(List.of(
+            List.of("EVT1", "\"Big\" Night", "a \"\"quoted\"\" word"),
+            List.of("\"a", "b\"", "c\\n")), lines);
+    }
+
+    @Test
+    void headerIsOnlyRecognizedOnTheFirstLine() throws IOException {
+        List<List<String>> lines = readLines("x,\"y\"\n" + RecordTokenizer.HEADER + "\n");
+        assertEquals(List.of(List.of("x", "\"y\""), List.of(RecordTokenizer.HEADER)), lines);
+    }
+
+    @Test
+    void legacyEventFileKeepsItsQuotesWhenRewritten() throws IOException {
+        Path path = directory.resolve("events.txt");
+        Files.writeString(path, "EVT1,\"Big\" Night,Bring a \"friend\",2030-01-01 09:00,Hall,10,2,org,\"odd,bob\n");
+        EventFile file = new EventFile(path);
+        List<Event> events = file.read();
+        assertEquals("\"Big\" Night", events.get(0).getTitle());
+        assertEquals("Bring a \"friend\"", events.get(0).getDescription());
+
+        // Written back without loading the participants, so their bytes are copied from the old file
+        file.write(events);
+        assertTrue(Files.readString(path).startsWith(RecordTokenizer.HEADER));
+        Event reread = new EventFile(path).read().get(0);
+        assertEquals("\"Big\" Night", reread.getTitle());
+        assertEquals("Bring a \"friend\"", reread.getDescription());
+        assertEquals(List.of("\"odd", "bob"), reread.getParticipants());
+    }
+
+    private static List<String> readAll(RecordTokenizer fields) {
+        List<String> values = new ArrayList<>();
+        while (fields.hasNext()) {
+            values.add(fields.next());
+        }
+        return values;
+    }
+
+    private static List<List<String>> readLines(String file) throws IOException {
+        List<List<String>> lines = new ArrayList<>();
+        RecordTokenizer.forEachLine(new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)),
+            fields -> lines.add(readAll(fields)));
+        return lines;
+    }
+}
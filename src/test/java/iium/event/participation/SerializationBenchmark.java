@@ -0,0 +1,125 @@
+package iium.event.participation;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Round-trip benchmark for Java serialization of events.
+ * Compares the Externalizable format of Event with default serialization of the same fields,
+ * the way Event was serialized before, for a whole list in one stream (caching) and for
+ * single events each in their own stream (copying or sending one event).
+ * Run without JavaFX on the class path:
+ * java -cp target/classes:target/test-classes iium.event.participation.SerializationBenchmark 100000
+ */
+public class SerializationBenchmark {
+    private static final int RUNS = 5;
+    private static final int SINGLE_EVENTS = 10_000;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<Event> events = new ArrayList<>(count);
+        List<DefaultEvent> defaults = new ArrayList<>(count);
+        String[] locations = {"Main Auditorium", "KICT Lab 1", "Cultural Centre", "Sports Complex", "Library Hall"};
+        for (int i = 0; i < count; i++) {
+            Event event = new Event(String.format("EVT%07d", i), "Event " + i, "Generated event number " + i,
+                String.format("2030-%02d-%02d 09:00", i % 12 + 1, i % 28 + 1), locations[i % locations.length],
+                200, "admin");
+            for (int p = 0; p < 5 + i % 40; p++) {
+                event.registerParticipant("student" + (i * 7 + p) % 50_000);
+            }
+            events.add(event);
+            defaults.add(new DefaultEvent(event));
+        }
+        int single = Math.min(count, SINGLE_EVENTS);
+        System.out.printf("Serialization benchmark: %d events, best of %d runs%n", count, RUNS);
+        report("list, default serialization", count, () -> roundTrip(defaults));
+        report("list, Externalizable", count, () -> roundTrip(events));
+        report("one event per stream, default serialization", single, () -> roundTripEach(defaults.subList(0, single)));
+        report("one event per stream, Externalizable", single, () -> roundTripEach(events.subList(0, single)));
+    }
+
+    private interface Run {
+        long run() throws IOException;
+    }
+
+    private static void report(String name, int count, Run run) throws IOException {
+        long best = Long.MAX_VALUE;
+        long bytes = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            bytes = run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-46s %8.1f ms  %6.0f events/ms  %5d bytes/event%n", name, best / 1e6,
+            count / (best / 1e6), bytes / count);
+    }
+
+    /**
+     * Writes and reads back a whole list in one stream.
+     * @return The size of the stream
+     */
+    private static long roundTrip(List<?> objects) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new ArrayList<>(objects));
+        }
+        read(bytes.toByteArray());
+        return bytes.size();
+    }
+
+    /**
+     * Writes and reads back every object in its own stream.
+     * @return The total size of the streams
+     */
+    private static long roundTripEach(List<?> objects) throws IOException {
+        long total = 0;
+        for (Object object : objects) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(object);
+            }
+            read(bytes.toByteArray());
+            total += bytes.size();
+        }
+        return total;
+    }
+
+    private static void read(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * The fields of an event serialized the way Event was before it was Externalizable.
+     */
+    private static class DefaultEvent implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String id;
+        private final String title;
+        private final String description;
+        private final String date;
+        private final String endDate;
+        private final String location;
+        private final int capacity;
+        private final int registeredCount;
+        private final String organizerId;
+        private final IntSet participants;
+
+        DefaultEvent(Event event) {
+            id = event.getId();
+            title = event.getTitle();
+            description = event.getDescription();
+            date = event.getDate();
+            endDate = event.getEndDate();
+            location = event.getLocation();
+            capacity = event.getCapacity();
+            registeredCount = event.getRegisteredCount();
+            organizerId = event.getOrganizerId();
+            participants = event.getParticipantIds();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package iium.event.participation;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.scene.Scene;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.stage.Stage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scroll benchmark for large event tables.
+ * Fills the student event table layout with generated events, scrolls through it one step per
+ * frame and prints frame time statistics. Run with the number of rows as the argument, e.g.
+ * 50000; add -Diium.tableBenchmark.reflective=true to measure PropertyValueFactory columns instead.
+ * For a run without a display, start it with the Monocle headless platform or under xvfb-run.
+ */
+public class TableBenchmark extends Application {
+    private static final int DEFAULT_ROWS = 50_000;
+    private static final int FRAMES = 600;
+    private static final int WARMUP_FRAMES = 60;
+    private static final double FRAME_BUDGET_MS = 1000.0 / 60;
+
+    private final TableView<Event> table = new TableView<>();
+    private final long[] frameTimes = new long[FRAMES];
+    private int frame = -WARMUP_FRAMES;
+    private long lastFrame;
+    private int scrollStep;
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    @Override
+    public void start(Stage stage) {
+        List<String> args = getParameters().getUnnamed();
+        int rows = args.isEmpty() ? DEFAULT_ROWS : Integer.parseInt(args.get(0));
+        run(stage, rows, Boolean.getBoolean("iium.tableBenchmark.reflective"));
+    }
+
+    private void run(Stage stage, int rows, boolean reflective) {
+        if (reflective) {
+            table.getColumns().addAll(List.of(reflectiveColumn("ID", "id"), reflectiveColumn("Title", "title"),
+                reflectiveColumn("Date", "date"), reflectiveColumn("Location", "location"),
+                reflectiveColumn("Available", "availableSpaces")));
+        } else {
+            table.getColumns().addAll(List.of(EventColumn.text("ID", Event::getId), EventColumn.text("Title", Event::getTitle),
+                EventColumn.text("Date", Event::getDate), EventColumn.text("Location", Event::getLocation),
+                EventColumn.number("Available", Event::getAvailableSpaces)));
+        }
+        table.setItems(FXCollections.observableArrayList(generateEvents(rows)));
+        stage.setTitle("Table benchmark");
+        stage.setScene(new Scene(table, 1024, 768));
+        stage.show();
+        // Large enough steps that every frame shows mostly new rows, spread over the whole table
+        scrollStep = Math.max(1, rows / (FRAMES + WARMUP_FRAMES));
+
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (lastFrame != 0 && frame >= 0) {
+                    frameTimes[frame] = now - lastFrame;
+                }
+                lastFrame = now;
+                if (++frame == FRAMES) {
+                    stop();
+                    report(rows, reflective);
+                    Platform.exit();
+                    return;
+                }
+                table.scrollTo(((frame + WARMUP_FRAMES) * scrollStep) % Math.max(1, rows));
+            }
+        }.start();
+    }
+
+    private static TableColumn<Event, Object> reflectiveColumn(String title, String property) {
+        TableColumn<Event, Object> column = new TableColumn<>(title);
+        column.setCellValueFactory(new PropertyValueFactory<>(property));
+        return column;
+    }
+
+    private static List<Event> generateEvents(int rows) {
+        String[] locations = {"Main Auditorium", "KICT Lab 1", "Cultural Centre", "Sports Complex", "Library Hall"};
+        List<Event> events = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            events.add(new Event(String.format("EVT%06d", i), "Event " + i, "Generated event " + i,
+                String.format("2025-%02d-%02d 09:00", i % 12 + 1, i % 28 + 1), locations[i % locations.length],
+                50 + i % 200, "admin"));
+        }
+        return events;
+    }
+
+    private void report(int rows, boolean reflective) {
+        long[] sorted = frameTimes.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        int dropped = 0;
+        for (long time : sorted) {
+            total += time;
+            // Longer than one and a half frames means at least one frame was skipped
+            if (time / 1e6 > FRAME_BUDGET_MS * 1.5) {
+                dropped++;
+            }
+        }
+        System.out.printf("Table benchmark: %d rows, %s columns, %d frames%n", rows,
+            reflective ? "PropertyValueFactory" : "EventColumn", FRAMES);
+        System.out.printf("  mean %.2f ms, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+            total / 1e6 / FRAMES, percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+            sorted[sorted.length - 1] / 1e6);
+        System.out.printf("  %d frames took longer than %.1f ms%n", dropped, FRAME_BUDGET_MS * 1.5);
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}